@@ -0,0 +1,63 @@
+package main.io;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Vector API implementation, testing 32 or 64 bytes per step depending on the CPU.
+ *
+ * Kept outside src/ because it only compiles with the incubator module:
+ *   javac --add-modules jdk.incubator.vector -cp out -d out src-vector/main/io/VectorByteScanner.java
+ * and is picked up by {@link ByteScanners} when the JVM runs with --add-modules jdk.incubator.vector.
+ */
+public class VectorByteScanner implements ByteScanner {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    @Override
+    public int indexOf(ByteBuffer buffer, int from, int to, byte value) {
+        int i = from;
+        int upperBound = from + SPECIES.loopBound(to - from);
+        for (; i < upperBound; i += SPECIES.length()) {
+            VectorMask<Byte> matches = ByteVector.fromByteBuffer(SPECIES, buffer, i, ByteOrder.nativeOrder())
+                    .eq(value);
+            if (matches.anyTrue()) {
+                return i + matches.firstTrue();
+            }
+        }
+
+        for (; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int indexOf(byte[] array, int from, int to, byte value) {
+        int i = from;
+        int upperBound = from + SPECIES.loopBound(to - from);
+        for (; i < upperBound; i += SPECIES.length()) {
+            VectorMask<Byte> matches = ByteVector.fromArray(SPECIES, array, i).eq(value);
+            if (matches.anyTrue()) {
+                return i + matches.firstTrue();
+            }
+        }
+
+        for (; i < to; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String getName() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+}
@@ -1,20 +1,102 @@
 package main;
 
+import main.cluster.ClusterWorker;
+import main.config.AppConfig;
+import main.processors.BatchRunner;
 import main.processors.MeteorologicalDataProcessor;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
 public class Main {
     public static void main(String[] args) {
-        String directoryPath;
+        List<String> directoryPaths = new ArrayList<>();
+        String configFile = null;
+        String batchScript = null;
+        Properties cliOverrides = new Properties();
+
+        // Usage: [directory ...] [--config file] [--batch script|-] [--<setting> value ...]
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                directoryPaths.add(args[i]);
+                continue;
+            }
+
+            if (i + 1 >= args.length) {
+                System.err.println("Missing value for option " + args[i]);
+                break;
+            }
+
+            String key = args[i].substring(2);
+            String value = args[++i];
+            if (key.equals("config")) {
+                configFile = value;
+            } else if (key.equals("batch")) {
+                batchScript = value;
+            } else {
+                cliOverrides.setProperty(key, value);
+            }
+        }
+
+        Properties overrides = new Properties();
+        if (configFile != null) {
+            try {
+                overrides.putAll(AppConfig.loadProperties(configFile));
+            } catch (IOException e) {
+                System.err.println("Error reading config file " + configFile + ", using defaults.");
+            }
+        }
+        // Command line settings win over the config file
+        overrides.putAll(cliOverrides);
 
-        if (args.length < 1) {
+        // Worker JVMs only parse the chunks a coordinator sends them
+        String coordinatorPort = overrides.getProperty("worker-of");
+        if (coordinatorPort != null) {
+            try {
+                new ClusterWorker(new AppConfig(List.of(), overrides), Integer.parseInt(coordinatorPort.trim())).run();
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid coordinator port: " + coordinatorPort);
+            }
+            return;
+        }
+
+        if (directoryPaths.isEmpty() && overrides.getProperty("directory") != null) {
+            // A comma-separated list, one directory per volume
+            for (String path : overrides.getProperty("directory").split(",")) {
+                if (!path.isBlank()) {
+                    directoryPaths.add(path.trim());
+                }
+            }
+        }
+
+        if (directoryPaths.isEmpty()) {
             // Use a default directory path if none is provided
-            directoryPath = "test_data";
-            System.out.println("No directory specified, using default: " + directoryPath);
-        } else {
-            directoryPath = args[0];
+            directoryPaths.add("test_data");
+            System.out.println("No directory specified, using default: test_data");
         }
 
-        MeteorologicalDataProcessor processor = new MeteorologicalDataProcessor(directoryPath);
-        processor.start(false);
+        MeteorologicalDataProcessor processor =
+                new MeteorologicalDataProcessor(new AppConfig(directoryPaths, overrides));
+        if (batchScript == null) {
+            processor.start(false);
+            return;
+        }
+
+        // Headless run: the script replaces the console, "-" reads it from standard input
+        int exitStatus;
+        try (BufferedReader script = batchScript.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : new BufferedReader(new FileReader(batchScript))) {
+            exitStatus = processor.runBatch(script);
+        } catch (IOException e) {
+            System.err.println("Error opening batch script " + batchScript + ": " + e.getMessage());
+            exitStatus = BatchRunner.EXIT_INVALID_SCRIPT;
+        }
+        System.exit(exitStatus);
     }
-}
\ No newline at end of file
+}
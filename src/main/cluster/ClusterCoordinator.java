@@ -0,0 +1,184 @@
+package main.cluster;
+
+import main.config.AppConfig;
+import main.data.ChunkStations;
+import main.io.FileChunk;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Hands chunks to worker JVMs connected over local sockets. A worker whose connection breaks or
+ * times out is dropped and its chunk reassigned to the next idle worker; a chunk a worker reports
+ * as failed is parsed locally and the worker kept. With no workers connected, chunks are parsed
+ * locally so ingest never stalls.
+ */
+public class ClusterCoordinator implements Runnable {
+    private static final long IDLE_WORKER_POLL_MS = 1000;
+
+    private final AppConfig config;
+    private final AtomicBoolean isRunning;
+    private final BlockingQueue<WorkerConnection> idleWorkers = new LinkedBlockingQueue<>();
+    private final Set<WorkerConnection> connectedWorkers = ConcurrentHashMap.newKeySet();
+    private final List<Process> spawnedWorkers = new ArrayList<>();
+    private final AtomicInteger workerCount = new AtomicInteger();
+    private final AtomicLong taskIds = new AtomicLong();
+    // Counted down per connected or failed-to-start spawned worker
+    private final CountDownLatch spawnedWorkersReady;
+    private volatile ServerSocket serverSocket;
+
+    public ClusterCoordinator(AppConfig config, AtomicBoolean isRunning) {
+        this.config = config;
+        this.isRunning = isRunning;
+        this.spawnedWorkersReady = new CountDownLatch(Math.max(0, config.getClusterSpawnWorkers()));
+    }
+
+    @Override
+    public void run() {
+        try (ServerSocket socket = new ServerSocket()) {
+            serverSocket = socket;
+            socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), config.getClusterPort()));
+            System.out.println("Cluster coordinator listening on " + socket.getLocalSocketAddress());
+            spawnWorkers(config.getClusterSpawnWorkers());
+
+            while (isRunning.get()) {
+                Socket client = socket.accept();
+                try {
+                    WorkerConnection worker = new WorkerConnection(client, config.getClusterTaskTimeoutSeconds() * 1000);
+                    connectedWorkers.add(worker);
+                    workerCount.incrementAndGet();
+                    idleWorkers.add(worker);
+                    spawnedWorkersReady.countDown();
+                    System.out.println("Cluster: " + worker.getName() + " connected");
+                } catch (IOException e) {
+                    System.err.println("Cluster: rejected worker connection: " + e.getMessage());
+                    client.close();
+                }
+            }
+        } catch (IOException e) {
+            if (isRunning.get()) {
+                System.err.println("Cluster coordinator error: " + e.getMessage());
+            }
+        } finally {
+            // Nobody connects any more, stop anyone waiting for workers
+            while (spawnedWorkersReady.getCount() > 0) {
+                spawnedWorkersReady.countDown();
+            }
+        }
+
+        System.out.println("Cluster coordinator terminated.");
+    }
+
+    /**
+     * Waits until every spawned worker has connected, so the first ingest round can use them.
+     *
+     * @return false if the timeout passed first
+     */
+    public boolean awaitWorkers(long timeout, TimeUnit unit) throws InterruptedException {
+        return spawnedWorkersReady.await(timeout, unit);
+    }
+
+    /**
+     * Processes the chunk on a worker, retrying on other workers when one fails, and returns the
+     * chunk's per-station table. Blocks the calling pool thread until a result is available.
+     */
+    public ChunkStations processChunk(FileChunk chunk, Function<FileChunk, ChunkStations> localParser) {
+        while (true) {
+            WorkerConnection worker;
+            try {
+                worker = idleWorkers.poll(IDLE_WORKER_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return localParser.apply(chunk);
+            }
+
+            if (worker == null) {
+                if (workerCount.get() == 0) {
+                    return localParser.apply(chunk);
+                }
+                continue;
+            }
+
+            try {
+                ChunkStations result = worker.process(taskIds.incrementAndGet(), chunk);
+                idleWorkers.add(worker);
+                return result;
+            } catch (WorkerConnection.TaskFailedException e) {
+                // The chunk itself is the problem; another worker would fail on it the same way
+                idleWorkers.add(worker);
+                System.err.println("Cluster: " + worker.getName() + " could not process "
+                        + chunk.getFile().getFileName() + " [" + chunk.getStartPosition() + ", "
+                        + chunk.getEndPosition() + ") (" + e.getMessage() + "), parsing it locally");
+                return localParser.apply(chunk);
+            } catch (IOException e) {
+                System.err.println("Cluster: " + worker.getName() + " failed (" + e.getMessage()
+                        + "), reassigning " + chunk.getFile().getFileName()
+                        + " [" + chunk.getStartPosition() + ", " + chunk.getEndPosition() + ")");
+                removeWorker(worker);
+            }
+        }
+    }
+
+    private void removeWorker(WorkerConnection worker) {
+        if (connectedWorkers.remove(worker)) {
+            workerCount.decrementAndGet();
+        }
+        worker.close();
+    }
+
+    private void spawnWorkers(int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        String javaBinary = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String port = String.valueOf(serverSocket.getLocalPort());
+        for (int i = 0; i < count; i++) {
+            ProcessBuilder builder = new ProcessBuilder(javaBinary, "-cp", System.getProperty("java.class.path"),
+                    "main.Main", "--worker-of", port,
+                    "--byte-scanner", config.getByteScanner());
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            try {
+                synchronized (spawnedWorkers) {
+                    spawnedWorkers.add(builder.start());
+                }
+            } catch (IOException e) {
+                System.err.println("Cluster: could not start worker process: " + e.getMessage());
+                spawnedWorkersReady.countDown();
+            }
+        }
+        System.out.println("Cluster: started " + count + " worker process(es)");
+    }
+
+    public void stop() {
+        try {
+            ServerSocket socket = serverSocket;
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException ignored) {
+        }
+
+        for (WorkerConnection worker : new ArrayList<>(connectedWorkers)) {
+            removeWorker(worker);
+        }
+
+        synchronized (spawnedWorkers) {
+            for (Process process : spawnedWorkers) {
+                process.destroy();
+            }
+            spawnedWorkers.clear();
+        }
+    }
+}
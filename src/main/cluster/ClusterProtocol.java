@@ -0,0 +1,87 @@
+package main.cluster;
+
+import main.data.ChunkStations;
+import main.io.FileChunk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.Base64;
+
+/**
+ * Line-based protocol between the coordinator and its workers:
+ * <pre>
+ * worker      -> coordinator: HELLO &lt;pid&gt;
+ * coordinator -> worker:      TASK &lt;id&gt; &lt;start&gt; &lt;end&gt; &lt;absolute path&gt;
+ * worker      -> coordinator: RESULT &lt;id&gt; &lt;stations&gt;, then per station
+ *                             &lt;count&gt; &lt;sum&gt; &lt;min&gt; &lt;max&gt; &lt;name&gt;
+ *                             FAILED &lt;id&gt; &lt;message&gt;
+ * coordinator -> worker:      BYE
+ * </pre>
+ * Temperatures are in tenths of a degree; names are sent as Base64 of their UTF-8 bytes, so
+ * any byte sequence survives the trip.
+ */
+final class ClusterProtocol {
+    static final String HELLO = "HELLO";
+    static final String TASK = "TASK";
+    static final String RESULT = "RESULT";
+    static final String FAILED = "FAILED";
+    static final String BYE = "BYE";
+
+    private ClusterProtocol() {
+    }
+
+    static String encodeTask(long taskId, FileChunk chunk) {
+        return TASK + " " + taskId + " " + chunk.getStartPosition() + " " + chunk.getEndPosition() + " "
+                + chunk.getFile().toAbsolutePath();
+    }
+
+    static FileChunk decodeTask(String[] parts) {
+        // The path is the rest of the line and may contain spaces
+        return new FileChunk(Paths.get(parts[4]), Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+    }
+
+    static void writeResult(PrintWriter writer, long taskId, ChunkStations stations) {
+        Base64.Encoder encoder = Base64.getEncoder();
+        byte[] names = stations.getNameBytes();
+        StringBuilder line = new StringBuilder();
+        writer.println(RESULT + " " + taskId + " " + stations.size());
+        for (int i = 0; i < stations.size(); i++) {
+            int offset = stations.getNameOffset(i);
+            byte[] name = new byte[stations.getNameLength(i)];
+            System.arraycopy(names, offset, name, 0, name.length);
+
+            line.setLength(0);
+            line.append(stations.getCount(i)).append(' ').append(stations.getTenthsSum(i))
+                    .append(' ').append(stations.getMinTenths(i)).append(' ').append(stations.getMaxTenths(i))
+                    .append(' ').append(encoder.encodeToString(name));
+            writer.println(line);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads the station lines announced by a RESULT header into a fresh table.
+     */
+    static ChunkStations readResult(String header, BufferedReader reader) throws IOException {
+        ChunkStations stations = new ChunkStations();
+        Base64.Decoder decoder = Base64.getDecoder();
+        try {
+            int count = Integer.parseInt(header.split(" ")[2]);
+            for (int i = 0; i < count; i++) {
+                String line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Connection lost");
+                }
+                String[] fields = line.split(" ");
+                byte[] name = decoder.decode(fields[4]);
+                stations.add(name, 0, name.length, Integer.parseInt(fields[0]), Long.parseLong(fields[1]),
+                        Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed result from worker: " + e.getMessage());
+        }
+        return stations;
+    }
+}
@@ -0,0 +1,69 @@
+package main.cluster;
+
+import main.config.AppConfig;
+import main.data.ChunkStations;
+import main.io.ByteScanners;
+import main.io.ChunkParser;
+import main.io.FileChunk;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Worker JVM: connects to a coordinator, parses the byte ranges it is given and returns their
+ * per-station tables. Exits when the coordinator says BYE or the connection drops.
+ */
+public class ClusterWorker {
+    private final AppConfig config;
+    private final int coordinatorPort;
+
+    public ClusterWorker(AppConfig config, int coordinatorPort) {
+        this.config = config;
+        this.coordinatorPort = coordinatorPort;
+    }
+
+    public void run() {
+        ChunkParser chunkParser = new ChunkParser(config, ByteScanners.select(config.getByteScanner()));
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinatorPort);
+             BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(new BufferedWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)))) {
+
+            writer.println(ClusterProtocol.HELLO + " " + ProcessHandle.current().pid());
+            writer.flush();
+            System.out.println("Worker connected to coordinator on port " + coordinatorPort);
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals(ClusterProtocol.BYE)) {
+                    break;
+                }
+
+                String[] parts = line.split(" ", 5);
+                if (!parts[0].equals(ClusterProtocol.TASK) || parts.length < 5) {
+                    System.err.println("Unexpected message from coordinator: " + line);
+                    continue;
+                }
+
+                long taskId = Long.parseLong(parts[1]);
+                try {
+                    FileChunk chunk = ClusterProtocol.decodeTask(parts);
+                    ChunkStations stations = new ChunkStations();
+                    chunkParser.parse(chunk, stations);
+                    ClusterProtocol.writeResult(writer, taskId, stations);
+                } catch (RuntimeException e) {
+                    writer.println(ClusterProtocol.FAILED + " " + taskId + " " + e.getMessage());
+                    writer.flush();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Worker lost connection to coordinator: " + e.getMessage());
+        }
+
+        System.out.println("Worker terminated.");
+    }
+}
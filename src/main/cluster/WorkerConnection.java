@@ -0,0 +1,79 @@
+package main.cluster;
+
+import main.data.ChunkStations;
+import main.io.FileChunk;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Coordinator side of one worker. Used by one pool thread at a time: it is taken from the idle
+ * queue, given a chunk and put back once the result arrived.
+ */
+class WorkerConnection {
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final PrintWriter writer;
+    private final String name;
+
+    WorkerConnection(Socket socket, int taskTimeoutMs) throws IOException {
+        this.socket = socket;
+        this.socket.setSoTimeout(taskTimeoutMs);
+        this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+
+        String hello = reader.readLine();
+        if (hello == null || !hello.startsWith(ClusterProtocol.HELLO)) {
+            throw new IOException("Unexpected handshake: " + hello);
+        }
+        this.name = "worker " + hello.substring(ClusterProtocol.HELLO.length()).trim();
+    }
+
+    /**
+     * @throws TaskFailedException if the worker could not parse the chunk; the connection stays usable
+     * @throws IOException         if the connection broke or the worker timed out
+     */
+    ChunkStations process(long taskId, FileChunk chunk) throws IOException, TaskFailedException {
+        writer.println(ClusterProtocol.encodeTask(taskId, chunk));
+        if (writer.checkError()) {
+            throw new IOException("Connection lost");
+        }
+
+        String response = reader.readLine();
+        if (response == null) {
+            throw new IOException("Connection lost");
+        }
+        String failed = ClusterProtocol.FAILED + " " + taskId;
+        if (response.startsWith(failed)) {
+            throw new TaskFailedException(response.substring(failed.length()).trim());
+        }
+        if (!response.startsWith(ClusterProtocol.RESULT + " " + taskId)) {
+            throw new IOException("Unexpected response: " + response);
+        }
+        return ClusterProtocol.readResult(response, reader);
+    }
+
+    void close() {
+        writer.println(ClusterProtocol.BYE);
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * A FAILED reply: the chunk could not be parsed, the worker itself is fine.
+     */
+    static class TaskFailedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        TaskFailedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package main.commands;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Splits a command line into the command name and its options. A double-quoted value may
+ * contain spaces, e.g. {@code LOOKUP --station "Las Palmas" --output out.txt}.
+ */
 public class CommandParser {
+    private static final Pattern TOKEN = Pattern.compile("\"([^\"]*)\"|(\\S+)");
 
     public Map.Entry<String, Map<String, String>> parseCommand(String input) {
         String[] parts = input.split("\\s+", 2);
@@ -12,14 +21,19 @@ public class CommandParser {
         Map<String, String> args = new HashMap<>();
 
         if (parts.length > 1) {
-            String argsString = parts[1];
-            String[] argsParts = argsString.split("\\s+");
+            List<String> tokens = new ArrayList<>();
+            List<Boolean> quoted = new ArrayList<>();
+            Matcher matcher = TOKEN.matcher(parts[1]);
+            while (matcher.find()) {
+                tokens.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+                quoted.add(matcher.group(1) != null);
+            }
 
-            for (int i = 0; i < argsParts.length; i++) {
-                if (argsParts[i].startsWith("--") || argsParts[i].startsWith("-")) {
-                    String key = argsParts[i];
-                    String value = (i + 1 < argsParts.length && !argsParts[i + 1].startsWith("-"))
-                            ? argsParts[++i] : "true";
+            for (int i = 0; i < tokens.size(); i++) {
+                if (!quoted.get(i) && tokens.get(i).startsWith("-")) {
+                    String key = tokens.get(i);
+                    boolean hasValue = i + 1 < tokens.size() && (quoted.get(i + 1) || !tokens.get(i + 1).startsWith("-"));
+                    String value = hasValue ? tokens.get(++i) : "true";
                     args.put(key, value);
                 }
             }
@@ -27,4 +41,4 @@ public class CommandParser {
 
         return new AbstractMap.SimpleEntry<>(commandName, args);
     }
-}
\ No newline at end of file
+}
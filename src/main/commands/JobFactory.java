@@ -0,0 +1,217 @@
+package main.commands;
+
+import main.jobs.Job;
+import main.jobs.impl.*;
+
+import java.util.Map;
+
+/**
+ * Validates parsed command arguments and builds the matching job. Invalid input is reported
+ * with an IllegalArgumentException carrying a short message for the user.
+ */
+public class JobFactory {
+    private static final double DEFAULT_ESTIMATE_FRACTION = 0.01;
+
+    public Job createJob(String commandName, Map<String, String> args) {
+        switch (commandName) {
+            case "SCAN":
+                return createScanJob(args);
+            case "STATUS":
+                return createStatusJob(args);
+            case "MAP":
+                return createMapJob(args);
+            case "ESTIMATE":
+                return createEstimateJob(args);
+            case "LOOKUP":
+                return createLookupJob(args);
+            case "STATION":
+                return createStationJob(args);
+            case "EXPORTMAP":
+                return createExportMapJob();
+            case "MEMORY":
+                return createMemoryJob();
+            case "STATS":
+                return createStatsJob();
+            case "JFR":
+                return createRecordingJob(args);
+            case "SHUTDOWN":
+                return createShutdownJob(args);
+            case "START":
+                return createStartJob(args);
+            default:
+                throw new IllegalArgumentException("Unknown command: " + commandName);
+        }
+    }
+
+    private Job createScanJob(Map<String, String> args) {
+        String minTemp = args.getOrDefault("--min", args.get("-m"));
+        String maxTemp = args.getOrDefault("--max", args.get("-M"));
+        String letter = args.getOrDefault("--letter", args.get("-l"));
+        String output = args.getOrDefault("--output", args.get("-o"));
+        String jobName = args.getOrDefault("--job", args.get("-j"));
+        String approx = args.getOrDefault("--approx", args.get("-a"));
+
+        if (minTemp == null || maxTemp == null || letter == null || output == null || jobName == null) {
+            throw new IllegalArgumentException("Missing required arguments for SCAN command");
+        }
+
+        try {
+            double min = Double.parseDouble(minTemp);
+            double max = Double.parseDouble(maxTemp);
+
+            if (min > max) {
+                throw new IllegalArgumentException("Min temperature cannot be greater than max temperature");
+            }
+
+            if (letter.length() != 1) {
+                throw new IllegalArgumentException("Letter must be a single character");
+            }
+
+            char targetLetter = Character.toLowerCase(letter.charAt(0));
+
+            double approxFraction = approx != null ? parseFraction(approx) : 0;
+
+            return new ScanCommandJob(min, max, targetLetter, output, jobName, approxFraction);
+
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid temperature format");
+        }
+    }
+
+    private Job createEstimateJob(Map<String, String> args) {
+        String minTemp = args.getOrDefault("--min", args.get("-m"));
+        String maxTemp = args.getOrDefault("--max", args.get("-M"));
+        String letter = args.getOrDefault("--letter", args.get("-l"));
+        String fraction = args.getOrDefault("--fraction", args.get("-f"));
+
+        try {
+            double min = minTemp != null ? Double.parseDouble(minTemp) : Double.NEGATIVE_INFINITY;
+            double max = maxTemp != null ? Double.parseDouble(maxTemp) : Double.POSITIVE_INFINITY;
+
+            if (min > max) {
+                throw new IllegalArgumentException("Min temperature cannot be greater than max temperature");
+            }
+
+            if (letter != null && letter.length() != 1) {
+                throw new IllegalArgumentException("Letter must be a single character");
+            }
+
+            char targetLetter = letter != null ? Character.toLowerCase(letter.charAt(0)) : 0;
+            double sampleFraction = fraction != null ? parseFraction(fraction) : DEFAULT_ESTIMATE_FRACTION;
+
+            return new EstimateCommandJob(min, max, targetLetter, sampleFraction);
+
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid temperature format");
+        }
+    }
+
+    private Job createLookupJob(Map<String, String> args) {
+        String station = args.getOrDefault("--station", args.get("-s"));
+        String output = args.getOrDefault("--output", args.get("-o"));
+        String jobName = args.getOrDefault("--job", args.get("-j"));
+
+        if (station == null || output == null || station.equals("true") || output.equals("true")) {
+            throw new IllegalArgumentException("Missing required arguments for LOOKUP command");
+        }
+
+        String name = station.trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Station name cannot be empty");
+        }
+
+        return new LookupCommandJob(name, output, jobName != null ? jobName : "lookup-" + name);
+    }
+
+    private Job createStationJob(Map<String, String> args) {
+        String station = args.getOrDefault("--name", args.get("-n"));
+
+        if (station == null || station.equals("true") || station.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing station name for STATION command");
+        }
+
+        return new StationCommandJob(station.trim());
+    }
+
+    private static double parseFraction(String value) {
+        double fraction;
+        try {
+            fraction = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sample fraction: " + value);
+        }
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Sample fraction must be greater than 0 and at most 1");
+        }
+        return fraction;
+    }
+
+    private Job createStatusJob(Map<String, String> args) {
+        String jobName = args.getOrDefault("--job", args.get("-j"));
+
+        if (jobName == null) {
+            throw new IllegalArgumentException("Missing job name for STATUS command");
+        }
+
+        return new StatusCommandJob(jobName);
+    }
+
+    private Job createMapJob(Map<String, String> args) {
+        String window = args.getOrDefault("--window", args.get("-w"));
+        if (window == null) {
+            return new MapCommandJob(0);
+        }
+
+        switch (window.toLowerCase()) {
+            case "1m":
+                return new MapCommandJob(1);
+            case "15m":
+                return new MapCommandJob(15);
+            case "1h":
+                return new MapCommandJob(60);
+            default:
+                throw new IllegalArgumentException("Window must be one of 1m, 15m or 1h");
+        }
+    }
+
+    private Job createExportMapJob() {
+        return new ExportMapCommandJob();
+    }
+
+    private Job createMemoryJob() {
+        return new MemoryCommandJob();
+    }
+
+    private Job createStatsJob() {
+        return new StatsCommandJob();
+    }
+
+    private Job createRecordingJob(Map<String, String> args) {
+        boolean start = args.containsKey("--start");
+        boolean stop = args.containsKey("--stop");
+        String dumpFile = args.getOrDefault("--dump", args.get("-d"));
+
+        if ((start ? 1 : 0) + (stop ? 1 : 0) + (dumpFile != null ? 1 : 0) != 1) {
+            throw new IllegalArgumentException("JFR needs exactly one of --start, --dump <file> or --stop");
+        }
+
+        if (dumpFile != null) {
+            if (dumpFile.equals("true")) {
+                throw new IllegalArgumentException("Missing output file for JFR --dump");
+            }
+            return new RecordingCommandJob("dump", dumpFile);
+        }
+
+        return new RecordingCommandJob(start ? "start" : "stop", null);
+    }
+
+    private Job createShutdownJob(Map<String, String> args) {
+        boolean saveJobs = args.containsKey("--save-jobs") || args.containsKey("-s");
+        return new ShutdownCommandJob(saveJobs);
+    }
+
+    private Job createStartJob(Map<String, String> args) {
+        boolean loadJobs = args.containsKey("--load-jobs") || args.containsKey("-l");
+        return new StartCommandJob(loadJobs);
+    }
+}
@@ -1,34 +1,259 @@
 package main.config;
 
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Runtime settings. Every value has a built-in default and can be overridden by a properties
+ * file (--config) or on the command line (--key value), using the same keys in both places.
+ */
 public class AppConfig {
     private static final int DIRECTORY_POLL_INTERVAL_MS = 5000;
-    private static final int DEFAULT_THREAD_POOL_SIZE = 4;
+    private static final int DEFAULT_THREAD_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors());
     private static final int REPORT_INTERVAL_MINUTES = 1;
-    private static final long CHUNK_SIZE = 200 * 1024 * 1024; // 200MB chunks
+    private static final int INTERACTIVE_LANE_SIZE = 2; // MAP, STATUS, EXPORTMAP ... running at once
+    private static final int BULK_LANE_SIZE = 2; // SCAN, ESTIMATE and other heavy jobs running at once
+    private static final long MAX_CHUNK_SIZE = 200 * 1024 * 1024; // 200MB upper bound per chunk
+    private static final long MIN_CHUNK_SIZE = 4 * 1024 * 1024; // 4MB lower bound per chunk
+    private static final int TARGET_CHUNK_MILLIS = 500; // desired duration of one chunk task
+    private static final int PARSE_THROUGHPUT_MB_PER_SECOND = 200; // per thread, used to size chunks
+    private static final int TAIL_SPLIT_FACTOR = 4; // last wave of chunks is cut into this many pieces
+    private static final int READ_BUFFER_SIZE = 4 * 1024 * 1024; // 4MB direct buffers
+    private static final int READ_AHEAD_DEPTH = 2; // buffers per chunk task (2 = double buffering)
+    private static final String BYTE_SCANNER = "auto"; // auto, vector, swar or scalar
+    private static final int METRICS_INTERVAL_SECONDS = 10;
+    private static final int SERVER_PORT = 0; // query server disabled unless a port is configured
+    private static final int CLUSTER_PORT = 0; // coordinator mode disabled unless a port is configured
+    private static final int CLUSTER_SPAWN_WORKERS = 0;
+    private static final int CLUSTER_TASK_TIMEOUT_SECONDS = 600;
+    private static final int CLUSTER_CONNECT_TIMEOUT_SECONDS = 30; // how long startup waits for spawned workers
+    private static final int BATCH_TIMEOUT_MINUTES = 60; // how long a batch run waits for its commands
+    private static final long STATION_STORE_MB = 256; // per-station table size before it spills to disk
+    private static final long MEMORY_BUDGET_MB = Runtime.getRuntime().maxMemory() / (2 * 1024 * 1024);
 
-    private final String directoryPath;
+    private final List<String> directoryPaths;
+    private final List<Integer> volumeIoThreads = new ArrayList<>();
+    private final int threadPoolSize;
+    private final int directoryPollIntervalMs;
+    private final int reportIntervalMinutes;
+    private final int interactiveLaneSize;
+    private final int bulkLaneSize;
+    private final long maxChunkSize;
+    private final long minChunkSize;
+    private final int targetChunkMillis;
+    private final int parseThroughputMbPerSecond;
+    private final int tailSplitFactor;
+    private final int readBufferSize;
+    private final int readAheadDepth;
+    private final long memoryBudgetMb;
+    private final long stationStoreMb;
+    private final int batchTimeoutMinutes;
+    private final String stationSpillDirectory;
+    private final String byteScanner;
+    private final String metricsCsvPath;
+    private final int metricsIntervalSeconds;
+    private final int serverPort;
+    private final int clusterPort;
+    private final int clusterSpawnWorkers;
+    private final int clusterTaskTimeoutSeconds;
+    private final int clusterConnectTimeoutSeconds;
 
     public AppConfig(String directoryPath) {
-        this.directoryPath = directoryPath;
+        this(directoryPath, new Properties());
+    }
+
+    public AppConfig(String directoryPath, Properties overrides) {
+        this(List.of(directoryPath), overrides);
+    }
+
+    /**
+     * @param directoryPaths monitored directories, one per volume; io-threads sets the read
+     *                       concurrency of every volume and io-threads.N that of the N-th directory
+     */
+    public AppConfig(List<String> directoryPaths, Properties overrides) {
+        this.directoryPaths = List.copyOf(directoryPaths);
+        this.threadPoolSize = getInt(overrides, "thread-pool-size", DEFAULT_THREAD_POOL_SIZE);
+        int ioThreads = getInt(overrides, "io-threads", threadPoolSize);
+        for (int i = 1; i <= directoryPaths.size(); i++) {
+            volumeIoThreads.add(getInt(overrides, "io-threads." + i, ioThreads));
+        }
+        this.directoryPollIntervalMs = getInt(overrides, "poll-interval-ms", DIRECTORY_POLL_INTERVAL_MS);
+        this.reportIntervalMinutes = getInt(overrides, "report-interval-minutes", REPORT_INTERVAL_MINUTES);
+        this.interactiveLaneSize = getInt(overrides, "interactive-lane-size", INTERACTIVE_LANE_SIZE);
+        this.bulkLaneSize = getInt(overrides, "bulk-lane-size", BULK_LANE_SIZE);
+        this.maxChunkSize = getLong(overrides, "max-chunk-size", MAX_CHUNK_SIZE);
+        this.minChunkSize = Math.min(maxChunkSize, getLong(overrides, "min-chunk-size", MIN_CHUNK_SIZE));
+        this.targetChunkMillis = getInt(overrides, "target-chunk-millis", TARGET_CHUNK_MILLIS);
+        this.parseThroughputMbPerSecond = getInt(overrides, "parse-throughput-mb", PARSE_THROUGHPUT_MB_PER_SECOND);
+        this.tailSplitFactor = getInt(overrides, "tail-split-factor", TAIL_SPLIT_FACTOR);
+        this.readBufferSize = getInt(overrides, "read-buffer-size", READ_BUFFER_SIZE);
+        this.readAheadDepth = getInt(overrides, "read-ahead-depth", READ_AHEAD_DEPTH);
+        this.memoryBudgetMb = getLong(overrides, "memory-budget-mb", MEMORY_BUDGET_MB);
+        this.stationStoreMb = getLong(overrides, "station-store-mb", STATION_STORE_MB);
+        this.batchTimeoutMinutes = getInt(overrides, "batch-timeout-minutes", BATCH_TIMEOUT_MINUTES);
+        this.stationSpillDirectory = overrides.getProperty("station-spill-dir", System.getProperty("java.io.tmpdir"));
+        this.byteScanner = overrides.getProperty("byte-scanner", BYTE_SCANNER).trim().toLowerCase();
+        this.metricsCsvPath = overrides.getProperty("metrics-csv");
+        this.metricsIntervalSeconds = getInt(overrides, "metrics-interval-seconds", METRICS_INTERVAL_SECONDS);
+        this.serverPort = getInt(overrides, "server-port", SERVER_PORT);
+        this.clusterPort = getInt(overrides, "cluster-port", CLUSTER_PORT);
+        this.clusterSpawnWorkers = getInt(overrides, "cluster-spawn-workers", CLUSTER_SPAWN_WORKERS);
+        this.clusterTaskTimeoutSeconds = getInt(overrides, "cluster-task-timeout-seconds", CLUSTER_TASK_TIMEOUT_SECONDS);
+        this.clusterConnectTimeoutSeconds = getInt(overrides, "cluster-connect-timeout-seconds",
+                CLUSTER_CONNECT_TIMEOUT_SECONDS);
+    }
+
+    public static Properties loadProperties(String path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(path)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private static int getInt(Properties overrides, String key, int defaultValue) {
+        return (int) Math.min(Integer.MAX_VALUE, getLong(overrides, key, defaultValue));
+    }
+
+    private static long getLong(Properties overrides, String key, long defaultValue) {
+        String value = overrides.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+
+        System.err.println("Invalid value '" + value + "' for " + key + ", using default " + defaultValue);
+        return defaultValue;
+    }
+
+    public List<String> getDirectoryPaths() {
+        return directoryPaths;
     }
 
-    public String getDirectoryPath() {
-        return directoryPath;
+    /**
+     * Read threads of each monitored directory, in the order of {@link #getDirectoryPaths()}.
+     */
+    public List<Integer> getVolumeIoThreads() {
+        return volumeIoThreads;
     }
 
     public int getThreadPoolSize() {
-        return DEFAULT_THREAD_POOL_SIZE;
+        return threadPoolSize;
     }
 
     public int getDirectoryPollIntervalMs() {
-        return DIRECTORY_POLL_INTERVAL_MS;
+        return directoryPollIntervalMs;
     }
 
     public int getReportIntervalMinutes() {
-        return REPORT_INTERVAL_MINUTES;
+        return reportIntervalMinutes;
+    }
+
+    public int getInteractiveLaneSize() {
+        return interactiveLaneSize;
+    }
+
+    public int getBulkLaneSize() {
+        return bulkLaneSize;
+    }
+
+    public long getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    public long getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    public int getTargetChunkMillis() {
+        return targetChunkMillis;
+    }
+
+    public int getParseThroughputMbPerSecond() {
+        return parseThroughputMbPerSecond;
+    }
+
+    public int getTailSplitFactor() {
+        return tailSplitFactor;
+    }
+
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    public int getReadAheadDepth() {
+        return readAheadDepth;
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetMb * 1024 * 1024;
+    }
+
+    /**
+     * Off-heap size one directory's per-station table may reach before it moves to a
+     * memory-mapped file.
+     */
+    public long getStationStoreBytes() {
+        return stationStoreMb * 1024 * 1024;
+    }
+
+    public String getStationSpillDirectory() {
+        return stationSpillDirectory;
+    }
+
+    public int getBatchTimeoutMinutes() {
+        return batchTimeoutMinutes;
+    }
+
+    public String getByteScanner() {
+        return byteScanner;
+    }
+
+    /**
+     * Path of the periodic metrics CSV, or null when metrics are not written to disk.
+     */
+    public String getMetricsCsvPath() {
+        return metricsCsvPath;
+    }
+
+    public int getMetricsIntervalSeconds() {
+        return metricsIntervalSeconds;
+    }
+
+    /**
+     * Port of the local query server, or 0 when it is disabled.
+     */
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    /**
+     * Port the cluster coordinator listens on for worker JVMs, or 0 when ingest runs locally.
+     */
+    public int getClusterPort() {
+        return clusterPort;
+    }
+
+    public int getClusterSpawnWorkers() {
+        return clusterSpawnWorkers;
+    }
+
+    public int getClusterTaskTimeoutSeconds() {
+        return clusterTaskTimeoutSeconds;
     }
 
-    public long getChunkSize() {
-        return CHUNK_SIZE;
+    public int getClusterConnectTimeoutSeconds() {
+        return clusterConnectTimeoutSeconds;
     }
-}
\ No newline at end of file
+}
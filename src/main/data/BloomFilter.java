@@ -0,0 +1,74 @@
+package main.data;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bloom filter over station names, hashed as their UTF-8 bytes. Sized at ten bits per name with
+ * seven probes, which keeps false positives around one percent; there are never false negatives.
+ */
+public class BloomFilter {
+    private static final int BITS_PER_NAME = 10;
+    private static final int HASH_COUNT = 7;
+
+    private final long[] words;
+    private final int hashCount;
+
+    public BloomFilter(long[] words, int hashCount) {
+        this.words = words;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Filter of a chunk's stations, built from the hashes the chunk table already holds.
+     */
+    public static BloomFilter of(ChunkStations stations) {
+        int words = Math.max(1, (stations.size() * BITS_PER_NAME + 63) / 64);
+        BloomFilter filter = new BloomFilter(new long[words], HASH_COUNT);
+        for (int i = 0; i < stations.size(); i++) {
+            filter.add(stations.getHash(i));
+        }
+        return filter;
+    }
+
+    private void add(long hash) {
+        long step = mix(hash) | 1;
+        long bits = (long) words.length * 64;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash + i * step, bits);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String name) {
+        long hash = hash(name);
+        long step = mix(hash) | 1;
+        long bits = (long) words.length * 64;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash + i * step, bits);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long[] getWords() {
+        return words;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private static long hash(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return ChunkStations.hash(bytes, 0, bytes.length);
+    }
+
+    // Second, independent hash derived from the first (splitmix64 finalizer)
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,225 @@
+package main.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Chunk-local per-station totals, keyed by the raw name bytes: row count, temperature sum,
+ * minimum and maximum, all in tenths of a degree. An open-addressing index over entries kept
+ * in insertion order; names are copied once into a byte arena and never decoded, so the table
+ * only grows with the stations of its own chunk. Merged into a {@link StationStore} by bytes
+ * and hash once the chunk is done.
+ */
+public class ChunkStations {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private byte[] nameBytes = new byte[INITIAL_CAPACITY * 16];
+    private int nameBytesUsed;
+
+    // Entries, in insertion order
+    private long[] hashes = new long[INITIAL_CAPACITY];
+    private int[] nameOffsets = new int[INITIAL_CAPACITY];
+    private int[] nameLengths = new int[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private long[] tenthsSums = new long[INITIAL_CAPACITY];
+    private int[] minTenths = new int[INITIAL_CAPACITY];
+    private int[] maxTenths = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // Entry index + 1 per slot, 0 when empty; kept at most half full
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Adds one reading of the station named by {@code bytes[from, to)}. Surrounding whitespace is
+     * not part of the name; a name that is only whitespace is ignored.
+     */
+    public void add(byte[] bytes, int from, int to, int temperatureTenths) {
+        // Same characters as String.trim(); UTF-8 continuation bytes are negative and never match
+        while (from < to && bytes[from] >= 0 && bytes[from] <= ' ') {
+            from++;
+        }
+        while (to > from && bytes[to - 1] >= 0 && bytes[to - 1] <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            return;
+        }
+
+        long hash = hash(bytes, from, to);
+        int mask = slots.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (slots[slot] != 0) {
+            int entry = slots[slot] - 1;
+            if (hashes[entry] == hash && Arrays.equals(nameBytes, nameOffsets[entry],
+                    nameOffsets[entry] + nameLengths[entry], bytes, from, to)) {
+                counts[entry]++;
+                tenthsSums[entry] += temperatureTenths;
+                if (temperatureTenths < minTenths[entry]) {
+                    minTenths[entry] = temperatureTenths;
+                } else if (temperatureTenths > maxTenths[entry]) {
+                    maxTenths[entry] = temperatureTenths;
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        insert(slot, hash, bytes, from, to, 1, temperatureTenths, temperatureTenths, temperatureTenths);
+    }
+
+    /**
+     * Adds the totals of a station computed elsewhere, e.g. by a cluster worker. The name must
+     * already be trimmed.
+     */
+    public void add(byte[] bytes, int from, int to, int count, long tenthsSum, int min, int max) {
+        long hash = hash(bytes, from, to);
+        int mask = slots.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (slots[slot] != 0) {
+            int entry = slots[slot] - 1;
+            if (hashes[entry] == hash && Arrays.equals(nameBytes, nameOffsets[entry],
+                    nameOffsets[entry] + nameLengths[entry], bytes, from, to)) {
+                counts[entry] += count;
+                tenthsSums[entry] += tenthsSum;
+                minTenths[entry] = Math.min(minTenths[entry], min);
+                maxTenths[entry] = Math.max(maxTenths[entry], max);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        insert(slot, hash, bytes, from, to, count, tenthsSum, min, max);
+    }
+
+    private void insert(int slot, long hash, byte[] bytes, int from, int to, int count, long tenthsSum,
+                        int min, int max) {
+        int entry = append(hash, bytes, from, to);
+        counts[entry] = count;
+        tenthsSums[entry] = tenthsSum;
+        minTenths[entry] = min;
+        maxTenths[entry] = max;
+        slots[slot] = entry + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+    }
+
+    private int append(long hash, byte[] bytes, int from, int to) {
+        int length = to - from;
+        if (nameBytesUsed + length > nameBytes.length) {
+            nameBytes = Arrays.copyOf(nameBytes, Math.max(nameBytes.length * 2, nameBytesUsed + length));
+        }
+        System.arraycopy(bytes, from, nameBytes, nameBytesUsed, length);
+
+        if (size == hashes.length) {
+            int capacity = size * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+            nameLengths = Arrays.copyOf(nameLengths, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            tenthsSums = Arrays.copyOf(tenthsSums, capacity);
+            minTenths = Arrays.copyOf(minTenths, capacity);
+            maxTenths = Arrays.copyOf(maxTenths, capacity);
+        }
+        hashes[size] = hash;
+        nameOffsets[size] = nameBytesUsed;
+        nameLengths[size] = length;
+        nameBytesUsed += length;
+        return size++;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = (int) (hashes[entry] ^ (hashes[entry] >>> 32)) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getHash(int index) {
+        return hashes[index];
+    }
+
+    /**
+     * The arena holding every name; entry {@code index} starts at {@link #getNameOffset(int)}.
+     */
+    public byte[] getNameBytes() {
+        return nameBytes;
+    }
+
+    public int getNameOffset(int index) {
+        return nameOffsets[index];
+    }
+
+    public int getNameLength(int index) {
+        return nameLengths[index];
+    }
+
+    public String getName(int index) {
+        return new String(nameBytes, nameOffsets[index], nameLengths[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lowercased first character of the name, the key of the per-letter map.
+     */
+    public char getLetter(int index) {
+        return letterOf(nameBytes, nameOffsets[index], nameOffsets[index] + nameLengths[index]);
+    }
+
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    public long getTenthsSum(int index) {
+        return tenthsSums[index];
+    }
+
+    public int getMinTenths(int index) {
+        return minTenths[index];
+    }
+
+    public int getMaxTenths(int index) {
+        return maxTenths[index];
+    }
+
+    /**
+     * Lowercased first character of the station named by {@code bytes[from, to)} without its
+     * surrounding whitespace, or 0 if nothing is left. Only names that start with a multi-byte
+     * character are decoded, and only their first few bytes.
+     */
+    public static char letterOf(byte[] bytes, int from, int to) {
+        // Same characters as String.trim(); UTF-8 continuation bytes are negative and never match
+        while (from < to && bytes[from] >= 0 && bytes[from] <= ' ') {
+            from++;
+        }
+        if (from == to) {
+            return 0;
+        }
+        if (bytes[from] >= 0) {
+            return Character.toLowerCase((char) bytes[from]);
+        }
+        int length = Math.min(4, to - from);
+        return Character.toLowerCase(new String(bytes, from, length, StandardCharsets.UTF_8).charAt(0));
+    }
+
+    /**
+     * 64-bit FNV-1a over name bytes, shared by chunk tables, the station store and the Bloom
+     * filters of the station index.
+     */
+    public static long hash(byte[] bytes, int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
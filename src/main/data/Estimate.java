@@ -0,0 +1,48 @@
+package main.data;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Extrapolated per-letter count and temperature sum of the matching rows, with the variance
+ * of each so a 95% confidence interval can be reported.
+ */
+public class Estimate {
+    private static final double Z_95 = 1.96;
+
+    private final Map<Character, double[]> letters = new TreeMap<>();
+    private final long sampledBytes;
+    private final long totalBytes;
+    private final long rowsRead;
+    private final long elapsedNanos;
+
+    public Estimate(long sampledBytes, long totalBytes, long rowsRead, long elapsedNanos) {
+        this.sampledBytes = sampledBytes;
+        this.totalBytes = totalBytes;
+        this.rowsRead = rowsRead;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public void addLetter(char letter, double count, double countVariance, double sum, double sumVariance) {
+        letters.put(letter, new double[]{count, countVariance, sum, sumVariance});
+    }
+
+    public String format() {
+        StringBuilder output = new StringBuilder();
+        output.append(String.format("Estimated from %.1f%% of %.1f MB (%d rows read in %.2f s), 95%% confidence:%n",
+                totalBytes > 0 ? 100.0 * sampledBytes / totalBytes : 100.0, totalBytes / (1024.0 * 1024.0),
+                rowsRead, elapsedNanos / 1e9));
+
+        if (letters.isEmpty()) {
+            output.append(String.format("No matching rows in the sample%n"));
+        }
+        for (Map.Entry<Character, double[]> entry : letters.entrySet()) {
+            double[] values = entry.getValue();
+            output.append(String.format("%c: count %.0f +/- %.0f | sum %.1f +/- %.1f | mean %.2f%n",
+                    entry.getKey(), values[0], Z_95 * Math.sqrt(values[1]),
+                    values[2], Z_95 * Math.sqrt(values[3]),
+                    values[0] > 0 ? values[2] / values[0] : 0));
+        }
+        return output.toString();
+    }
+}
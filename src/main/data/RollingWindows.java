@@ -0,0 +1,59 @@
+package main.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-letter totals of recently ingested data, kept in fixed time buckets so the sum over any
+ * window up to the retention period is available without replaying files. A map rebuild is
+ * recorded as the difference between its new and old totals once it completes, so a window
+ * holds the net change over that period.
+ */
+public class RollingWindows {
+    private static final long BUCKET_MILLIS = 5000;
+
+    private final long[] bucketIds;
+    private final List<Map<Character, StationData>> buckets;
+
+    public RollingWindows(long retentionMillis) {
+        int bucketCount = (int) ((retentionMillis + BUCKET_MILLIS - 1) / BUCKET_MILLIS);
+        this.bucketIds = new long[bucketCount];
+        this.buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            bucketIds[i] = -1;
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    public synchronized void add(char letter, int count, double sum, long nowMillis) {
+        long bucketId = nowMillis / BUCKET_MILLIS;
+        int slot = (int) (bucketId % buckets.size());
+        if (bucketIds[slot] != bucketId) {
+            // The slot still holds a bucket that fell out of the retention period
+            bucketIds[slot] = bucketId;
+            buckets.get(slot).clear();
+        }
+        buckets.get(slot).computeIfAbsent(letter, k -> new StationData()).update(count, sum);
+    }
+
+    /**
+     * Sums the buckets of the last {@code windowMillis}, including the current partial bucket.
+     */
+    public synchronized Map<Character, StationData> aggregate(long windowMillis, long nowMillis) {
+        long newestBucket = nowMillis / BUCKET_MILLIS;
+        long bucketsInWindow = Math.min(buckets.size(), (windowMillis + BUCKET_MILLIS - 1) / BUCKET_MILLIS);
+
+        Map<Character, StationData> result = new HashMap<>();
+        for (int i = 0; i < buckets.size(); i++) {
+            if (bucketIds[i] > newestBucket - bucketsInWindow && bucketIds[i] <= newestBucket) {
+                for (Map.Entry<Character, StationData> entry : buckets.get(i).entrySet()) {
+                    result.computeIfAbsent(entry.getKey(), k -> new StationData())
+                            .update(entry.getValue().getStationCount(), entry.getValue().getTemperatureSum());
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,312 @@
+package main.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-station count, temperature sum, minimum and maximum kept outside the Java heap, so millions
+ * of distinct stations cost the garbage collector nothing. An open-addressing table with linear
+ * probing over the UTF-8 name bytes; every slot has a fixed width:
+ * <pre>
+ * hash (8), count (8), sum in tenths (8), min (4), max (4), name length (2), name bytes (102)
+ * </pre>
+ * The table lives in direct buffers until it would outgrow the memory limit, from then on in a
+ * memory-mapped file in the spill directory. Names longer than a slot holds are kept on the heap.
+ */
+public class StationStore {
+    public static final int MAX_NAME_BYTES = 102;
+
+    private static final int SLOT_SIZE = 136;
+    private static final int HASH = 0;
+    private static final int COUNT = 8;
+    private static final int SUM = 16;
+    private static final int MIN = 24;
+    private static final int MAX = 28;
+    private static final int NAME_LENGTH = 32;
+    private static final int NAME = 34;
+    private static final int PAGE_SLOTS = (1 << 30) / SLOT_SIZE; // a buffer is indexed by int
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final long memoryLimitBytes;
+    private final Path spillDirectory;
+
+    // Guarded by this
+    private ByteBuffer[] pages;
+    private int capacity;
+    private int size;
+    private long rows;
+    private Path spillFile;
+    private final Map<String, Aggregate> longNames = new HashMap<>();
+
+    public StationStore(long memoryLimitBytes, Path spillDirectory) {
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.spillDirectory = spillDirectory;
+        this.capacity = INITIAL_CAPACITY;
+        this.pages = allocate(capacity);
+    }
+
+    /**
+     * Adds every station of a chunk-local table to the store, copying the name bytes and reusing
+     * the hashes the table already computed.
+     */
+    public synchronized void merge(ChunkStations chunk) {
+        byte[] names = chunk.getNameBytes();
+        for (int i = 0; i < chunk.size(); i++) {
+            rows += chunk.getCount(i);
+            if (chunk.getNameLength(i) > MAX_NAME_BYTES) {
+                longNames.computeIfAbsent(chunk.getName(i), k -> new Aggregate())
+                        .add(chunk.getCount(i), chunk.getTenthsSum(i), chunk.getMinTenths(i), chunk.getMaxTenths(i));
+                continue;
+            }
+            add(slotHash(chunk.getHash(i)), names, chunk.getNameOffset(i), chunk.getNameLength(i),
+                    chunk.getCount(i), chunk.getTenthsSum(i), chunk.getMinTenths(i), chunk.getMaxTenths(i));
+        }
+    }
+
+    private void add(long hash, byte[] names, int offset, int length, long count, long tenthsSum, int min, int max) {
+        if ((size + 1) * 2L > capacity) {
+            grow();
+        }
+
+        int mask = capacity - 1;
+        for (int index = (int) (hash ^ (hash >>> 32)) & mask; ; index = (index + 1) & mask) {
+            ByteBuffer page = pages[index / PAGE_SLOTS];
+            int slot = (index % PAGE_SLOTS) * SLOT_SIZE;
+            long slotHash = page.getLong(slot + HASH);
+            if (slotHash == 0) {
+                page.putLong(slot + HASH, hash);
+                page.putLong(slot + COUNT, count);
+                page.putLong(slot + SUM, tenthsSum);
+                page.putInt(slot + MIN, min);
+                page.putInt(slot + MAX, max);
+                page.putShort(slot + NAME_LENGTH, (short) length);
+                page.put(slot + NAME, names, offset, length);
+                size++;
+                return;
+            }
+            if (slotHash == hash && nameEquals(page, slot, names, offset, length)) {
+                page.putLong(slot + COUNT, page.getLong(slot + COUNT) + count);
+                page.putLong(slot + SUM, page.getLong(slot + SUM) + tenthsSum);
+                page.putInt(slot + MIN, Math.min(page.getInt(slot + MIN), min));
+                page.putInt(slot + MAX, Math.max(page.getInt(slot + MAX), max));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Totals of one station, or null if it has no readings.
+     */
+    public synchronized Aggregate get(String station) {
+        byte[] name = station.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            Aggregate aggregate = longNames.get(station);
+            return aggregate == null ? null : aggregate.copy();
+        }
+
+        long hash = slotHash(ChunkStations.hash(name, 0, name.length));
+        int mask = capacity - 1;
+        for (int index = (int) (hash ^ (hash >>> 32)) & mask; ; index = (index + 1) & mask) {
+            ByteBuffer page = pages[index / PAGE_SLOTS];
+            int slot = (index % PAGE_SLOTS) * SLOT_SIZE;
+            long slotHash = page.getLong(slot + HASH);
+            if (slotHash == 0) {
+                return null;
+            }
+            if (slotHash == hash && nameEquals(page, slot, name, 0, name.length)) {
+                Aggregate aggregate = new Aggregate();
+                aggregate.add(page.getLong(slot + COUNT), page.getLong(slot + SUM),
+                        page.getInt(slot + MIN), page.getInt(slot + MAX));
+                return aggregate;
+            }
+        }
+    }
+
+    /**
+     * Drops every station and gives the table's memory or spill file back.
+     */
+    public synchronized void clear() {
+        deleteSpillFile();
+        capacity = INITIAL_CAPACITY;
+        pages = allocate(capacity);
+        size = 0;
+        rows = 0;
+        longNames.clear();
+    }
+
+    public synchronized int size() {
+        return size + longNames.size();
+    }
+
+    /**
+     * Readings merged into the store, over all stations.
+     */
+    public synchronized long getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Bytes taken by the table, in direct memory or in the spill file.
+     */
+    public synchronized long getTableBytes() {
+        return (long) capacity * SLOT_SIZE;
+    }
+
+    public synchronized boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Doubles the table and re-inserts every slot; the slots are copied whole, the stored hash
+     * picks their new position.
+     */
+    private void grow() {
+        ByteBuffer[] oldPages = pages;
+        int oldCapacity = capacity;
+        Path oldSpillFile = spillFile;
+
+        capacity = oldCapacity * 2;
+        pages = allocate(capacity);
+        int mask = capacity - 1;
+        for (int oldIndex = 0; oldIndex < oldCapacity; oldIndex++) {
+            ByteBuffer oldPage = oldPages[oldIndex / PAGE_SLOTS];
+            int oldSlot = (oldIndex % PAGE_SLOTS) * SLOT_SIZE;
+            long hash = oldPage.getLong(oldSlot + HASH);
+            if (hash == 0) {
+                continue;
+            }
+
+            int index = (int) (hash ^ (hash >>> 32)) & mask;
+            while (pages[index / PAGE_SLOTS].getLong((index % PAGE_SLOTS) * SLOT_SIZE + HASH) != 0) {
+                index = (index + 1) & mask;
+            }
+            pages[index / PAGE_SLOTS].put((index % PAGE_SLOTS) * SLOT_SIZE, oldPage, oldSlot, SLOT_SIZE);
+        }
+
+        if (oldSpillFile != null && oldSpillFile != spillFile) {
+            deleteQuietly(oldSpillFile);
+        }
+    }
+
+    /**
+     * Zeroed pages for a table of the given slot count: direct buffers while the table fits the
+     * memory limit, otherwise a fresh memory-mapped file. A mapping stays valid after its channel
+     * is closed and is released when the buffer is collected.
+     */
+    private ByteBuffer[] allocate(int slots) {
+        long tableBytes = (long) slots * SLOT_SIZE;
+        ByteBuffer[] newPages = new ByteBuffer[(slots + PAGE_SLOTS - 1) / PAGE_SLOTS];
+        if (tableBytes <= memoryLimitBytes) {
+            for (int i = 0; i < newPages.length; i++) {
+                newPages[i] = ByteBuffer.allocateDirect(pageSlots(slots, i) * SLOT_SIZE);
+            }
+            return newPages;
+        }
+
+        try {
+            Path file = Files.createTempFile(spillDirectory, "stations-", ".tbl");
+            file.toFile().deleteOnExit();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                for (int i = 0; i < newPages.length; i++) {
+                    newPages[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                            (long) i * PAGE_SLOTS * SLOT_SIZE, (long) pageSlots(slots, i) * SLOT_SIZE);
+                }
+            }
+            if (spillFile == null) {
+                System.out.printf("Station store passed %d MB, spilling to %s%n",
+                        memoryLimitBytes / (1024 * 1024), file);
+            }
+            spillFile = file;
+            return newPages;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot spill station store to " + spillDirectory, e);
+        }
+    }
+
+    private static int pageSlots(int slots, int page) {
+        return Math.min(PAGE_SLOTS, slots - page * PAGE_SLOTS);
+    }
+
+    private void deleteSpillFile() {
+        if (spillFile != null) {
+            deleteQuietly(spillFile);
+            spillFile = null;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Error deleting station store file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean nameEquals(ByteBuffer page, int slot, byte[] names, int offset, int length) {
+        if (page.getShort(slot + NAME_LENGTH) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (page.get(slot + NAME + i) != names[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Zero marks an empty slot, so it is never stored as a hash
+    private static long slotHash(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Totals of one station, temperatures in tenths of a degree.
+     */
+    public static final class Aggregate {
+        private long count;
+        private long tenthsSum;
+        private int minTenths = Integer.MAX_VALUE;
+        private int maxTenths = Integer.MIN_VALUE;
+
+        public void add(long count, long tenthsSum, int minTenths, int maxTenths) {
+            this.count += count;
+            this.tenthsSum += tenthsSum;
+            this.minTenths = Math.min(this.minTenths, minTenths);
+            this.maxTenths = Math.max(this.maxTenths, maxTenths);
+        }
+
+        public void add(Aggregate other) {
+            add(other.count, other.tenthsSum, other.minTenths, other.maxTenths);
+        }
+
+        Aggregate copy() {
+            Aggregate copy = new Aggregate();
+            copy.add(this);
+            return copy;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return tenthsSum / 10.0 / count;
+        }
+
+        public double getMin() {
+            return minTenths / 10.0;
+        }
+
+        public double getMax() {
+            return maxTenths / 10.0;
+        }
+    }
+}
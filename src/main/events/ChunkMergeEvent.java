@@ -0,0 +1,30 @@
+package main.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("meteo.ChunkMerge")
+@Label("Chunk Merge")
+@Category("Meteo")
+@Description("Merge of one chunk result into the in-memory map")
+public class ChunkMergeEvent extends jdk.jfr.Event {
+    @Label("Job")
+    public String jobName;
+
+    @Label("File")
+    public String file;
+
+    @Label("Start Offset")
+    @DataAmount
+    public long startOffset;
+
+    @Label("End Offset")
+    @DataAmount
+    public long endOffset;
+
+    @Label("Rows")
+    public long rows;
+}
@@ -0,0 +1,29 @@
+package main.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("meteo.ProcessingRound")
+@Label("Processing Round")
+@Category("Meteo")
+@Description("All chunks of one ingest round, from splitting to the last merge")
+public class ProcessingRoundEvent extends jdk.jfr.Event {
+    @Label("Job")
+    public String jobName;
+
+    @Label("Files")
+    public int fileCount;
+
+    @Label("Chunks")
+    public int chunkCount;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Rows")
+    public long rows;
+}
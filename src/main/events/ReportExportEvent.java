@@ -0,0 +1,21 @@
+package main.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("meteo.ReportExport")
+@Label("Report Export")
+@Category("Meteo")
+@Description("Export of the in-memory map to the log CSV, periodic or via EXPORTMAP")
+public class ReportExportEvent extends jdk.jfr.Event {
+    @Label("Job")
+    public String jobName;
+
+    @Label("File")
+    public String file;
+
+    @Label("Rows")
+    public long rows;
+}
@@ -0,0 +1,33 @@
+package main.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("meteo.ScanFile")
+@Label("Scan File")
+@Category("Meteo")
+@Description("One file searched by a SCAN job")
+public class ScanFileEvent extends jdk.jfr.Event {
+    @Label("Job")
+    public String jobName;
+
+    @Label("File")
+    public String file;
+
+    @Label("Start Offset")
+    @DataAmount
+    public long startOffset;
+
+    @Label("End Offset")
+    @DataAmount
+    public long endOffset;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Matches")
+    public long matches;
+}
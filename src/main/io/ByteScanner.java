@@ -0,0 +1,23 @@
+package main.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds separator bytes (';', '\n') in raw file data. Implementations differ only in how many
+ * bytes they test per step; see {@link ByteScanners} for runtime selection.
+ */
+public interface ByteScanner {
+
+    /**
+     * Returns the absolute index of the first {@code value} in {@code buffer[from, to)}, or -1.
+     * The buffer's position and limit are not changed.
+     */
+    int indexOf(ByteBuffer buffer, int from, int to, byte value);
+
+    /**
+     * Returns the index of the first {@code value} in {@code array[from, to)}, or -1.
+     */
+    int indexOf(byte[] array, int from, int to, byte value);
+
+    String getName();
+}
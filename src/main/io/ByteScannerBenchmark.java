@@ -0,0 +1,86 @@
+package main.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the newline search throughput of the available byte scanners on synthetic
+ * measurement lines held in a direct buffer, the way chunk parsing sees them.
+ *
+ * Run with: java [--add-modules jdk.incubator.vector] -cp out main.io.ByteScannerBenchmark [sizeMb]
+ */
+public class ByteScannerBenchmark {
+    private static final String[] STATIONS = {"Hamburg", "Bulawayo", "Palembang", "St. John's", "Cracow",
+            "Bridgetown", "Istanbul", "Roseau", "Conakry", "Ouagadougou", "Petropavlovsk-Kamchatsky"};
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        ByteBuffer buffer = createBuffer(sizeMb * 1024 * 1024);
+
+        List<ByteScanner> scanners = new ArrayList<>();
+        scanners.add(new ScalarByteScanner());
+        scanners.add(new SwarByteScanner());
+        ByteScanner vectorScanner = ByteScanners.loadVectorScanner();
+        if (vectorScanner != null) {
+            scanners.add(vectorScanner);
+        } else {
+            System.out.println("Vector API not available, run with --add-modules jdk.incubator.vector");
+        }
+
+        double scalarThroughput = 0;
+        for (ByteScanner scanner : scanners) {
+            long lines = 0;
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                lines = countLines(scanner, buffer);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                lines = countLines(scanner, buffer);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            double throughput = (double) buffer.limit() * MEASURED_ROUNDS / (1024 * 1024) / seconds;
+            if (scalarThroughput == 0) {
+                scalarThroughput = throughput;
+            }
+            System.out.printf("%-10s %8.0f MB/s  %5.2fx  (%d lines)%n",
+                    scanner.getName(), throughput, throughput / scalarThroughput, lines);
+        }
+    }
+
+    private static long countLines(ByteScanner scanner, ByteBuffer buffer) {
+        long lines = 0;
+        int position = 0;
+        int limit = buffer.limit();
+        while (true) {
+            int newline = scanner.indexOf(buffer, position, limit, (byte) '\n');
+            if (newline < 0) {
+                return lines;
+            }
+            lines++;
+            position = newline + 1;
+        }
+    }
+
+    private static ByteBuffer createBuffer(int size) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        Random random = new Random(42);
+        while (true) {
+            String line = STATIONS[random.nextInt(STATIONS.length)] + ";"
+                    + (random.nextInt(1999) - 999) / 10.0 + "\n";
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            if (buffer.remaining() < bytes.length) {
+                break;
+            }
+            buffer.put(bytes);
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,47 @@
+package main.io;
+
+public class ByteScanners {
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_SCANNER_CLASS = "main.io.VectorByteScanner";
+
+    private ByteScanners() {
+    }
+
+    /**
+     * Picks a scanner by name ("vector", "swar", "scalar") or, for "auto", the fastest one
+     * this JVM supports. The Vector API one needs the incubator module to be loaded at runtime.
+     */
+    public static ByteScanner select(String preference) {
+        switch (preference) {
+            case "scalar":
+                return new ScalarByteScanner();
+            case "swar":
+                return new SwarByteScanner();
+            case "vector":
+            case "auto":
+                ByteScanner vectorScanner = loadVectorScanner();
+                if (vectorScanner != null) {
+                    return vectorScanner;
+                }
+                if (preference.equals("vector")) {
+                    System.err.println("Vector API not available, falling back to swar byte scanner");
+                }
+                return new SwarByteScanner();
+            default:
+                System.err.println("Unknown byte scanner '" + preference + "', using auto");
+                return select("auto");
+        }
+    }
+
+    public static ByteScanner loadVectorScanner() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return null;
+        }
+
+        try {
+            return (ByteScanner) Class.forName(VECTOR_SCANNER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package main.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Sequence of byte buffers consumed by a {@link LineReader}.
+ */
+public interface ByteSource extends AutoCloseable {
+
+    /**
+     * Returns the next buffer, ready for reading, or null at the end of the input.
+     * The previously returned buffer must not be used anymore.
+     */
+    ByteBuffer next() throws IOException;
+
+    @Override
+    void close();
+}
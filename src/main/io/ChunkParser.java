@@ -0,0 +1,91 @@
+package main.io;
+
+import main.config.AppConfig;
+import main.data.ChunkStations;
+import main.data.StationData;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses one byte range of a measurement file into per-letter partial results, reading the
+ * records through a {@link RecordCursor}. Rows are totalled per station in a chunk-local
+ * {@link ChunkStations} table and folded into letters once the chunk is done.
+ */
+public class ChunkParser {
+    private final AppConfig config;
+    private final ByteScanner byteScanner;
+    private final BufferPool bufferPool;
+
+    public ChunkParser(AppConfig config, ByteScanner byteScanner) {
+        this(config, byteScanner, config.getReadBufferSize(), config.getThreadPoolSize());
+    }
+
+    /**
+     * @param readBufferSize size of each read; ranges much shorter than the configured buffer
+     *                       (e.g. sample units) would otherwise read far past their end
+     * @param readers        threads that may read through this parser at the same time
+     */
+    public ChunkParser(AppConfig config, ByteScanner byteScanner, int readBufferSize, int readers) {
+        this.config = config;
+        this.byteScanner = byteScanner;
+        // Enough buffers for every reader to keep its full read-ahead ring in flight; a reader
+        // takes its ring one buffer at a time, so a smaller pool could leave them all waiting
+        this.bufferPool = new BufferPool(readBufferSize, readers * config.getReadAheadDepth());
+    }
+
+    public Map<Character, StationData> parse(FileChunk chunk) {
+        return parse(chunk.getFile(), chunk.getStartPosition(), chunk.getEndPosition());
+    }
+
+    /**
+     * Parses the chunk and adds the totals of every station it contains to {@code stations}.
+     */
+    public Map<Character, StationData> parse(FileChunk chunk, ChunkStations stations) {
+        return parse(chunk.getFile(), chunk.getStartPosition(), chunk.getEndPosition(), stations);
+    }
+
+    public Map<Character, StationData> parse(Path file, long startPosition, long endPosition) {
+        return parse(file, startPosition, endPosition, null);
+    }
+
+    private Map<Character, StationData> parse(Path file, long startPosition, long endPosition,
+                                              ChunkStations chunkStations) {
+        ChunkStations stations = chunkStations != null ? chunkStations : new ChunkStations();
+
+        try (RecordCursor records = openCursor(file, startPosition, endPosition)) {
+            while (records.next()) {
+                int temperature = records.getTemperatureTenths();
+                if (temperature != RecordCursor.INVALID_TEMPERATURE) {
+                    stations.add(records.getLine(), records.getNameStart(), records.getNameEnd(), temperature);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error processing chunk of file " + file.getFileName() + ": " + e.getMessage());
+        }
+
+        return letters(stations);
+    }
+
+    /**
+     * Folds the stations of a chunk into per-letter totals.
+     */
+    public static Map<Character, StationData> letters(ChunkStations stations) {
+        Map<Character, StationData> localMap = new HashMap<>();
+        for (int i = 0; i < stations.size(); i++) {
+            localMap.computeIfAbsent(stations.getLetter(i), k -> new StationData())
+                    .update(stations.getCount(i), stations.getTenthsSum(i) / 10.0);
+        }
+        return localMap;
+    }
+
+    /**
+     * Opens a cursor over the records owned by {@code [startPosition, endPosition)}, reading
+     * through this parser's buffer pool.
+     */
+    public RecordCursor openCursor(Path file, long startPosition, long endPosition) throws IOException {
+        return new RecordCursor(file, startPosition, endPosition, bufferPool, config.getReadAheadDepth(), byteScanner);
+    }
+}
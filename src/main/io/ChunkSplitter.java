@@ -0,0 +1,91 @@
+package main.io;
+
+import main.config.AppConfig;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Picks chunk boundaries from the file size, the pool size and a target duration per task.
+ * The last wave of chunks is cut finer so threads that finish early pick up small pieces
+ * instead of idling behind one straggler.
+ */
+public class ChunkSplitter {
+    private final AppConfig config;
+
+    public ChunkSplitter(AppConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * @param parallelism threads that read the file's chunks, i.e. the I/O threads of its volume
+     */
+    public List<FileChunk> split(Path file, long fileSize, int parallelism) {
+        List<FileChunk> chunks = new ArrayList<>();
+        if (fileSize <= 0) {
+            return chunks;
+        }
+
+        long minChunkSize = config.getMinChunkSize();
+
+        long targetChunkSize = (long) config.getParseThroughputMbPerSecond() * 1024 * 1024
+                * config.getTargetChunkMillis() / 1000;
+        long chunkSize = Math.max(minChunkSize, Math.min(config.getMaxChunkSize(), targetChunkSize));
+
+        // Files too small to give every thread a full chunk are still spread across the pool
+        if (fileSize < chunkSize * parallelism) {
+            chunkSize = Math.max(minChunkSize, ceilDiv(fileSize, parallelism));
+        }
+
+        // Even out the chunks so the last one isn't a small remainder
+        long numChunks = ceilDiv(fileSize, chunkSize);
+        chunkSize = ceilDiv(fileSize, numChunks);
+
+        long tailStart = numChunks > parallelism ? (numChunks - parallelism) * chunkSize : fileSize;
+        long tailLength = fileSize - tailStart;
+        long tailPieceSize = Math.max(minChunkSize, chunkSize / config.getTailSplitFactor());
+        if (tailLength > 0) {
+            tailPieceSize = ceilDiv(tailLength, ceilDiv(tailLength, tailPieceSize));
+        }
+
+        long position = 0;
+        while (position < fileSize) {
+            long size = position >= tailStart ? tailPieceSize : chunkSize;
+            long end = Math.min(position + size, fileSize);
+            chunks.add(new FileChunk(file, position, end));
+            position = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Splits a block-compressed gzip file. Chunks are planned on the compressed size and each
+     * boundary is moved forward to the next member start, since members can only be inflated whole.
+     */
+    public List<FileChunk> splitCompressed(Path file, long fileSize, List<Long> memberStarts, int parallelism) {
+        List<FileChunk> chunks = new ArrayList<>();
+        long chunkStart = 0;
+        for (FileChunk planned : split(file, fileSize, parallelism)) {
+            long end = memberAtOrAfter(memberStarts, planned.getEndPosition(), fileSize);
+            if (end > chunkStart) {
+                chunks.add(new FileChunk(file, chunkStart, end));
+                chunkStart = end;
+            }
+        }
+        return chunks;
+    }
+
+    static long memberAtOrAfter(List<Long> memberStarts, long position, long fileSize) {
+        int index = Collections.binarySearch(memberStarts, position);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < memberStarts.size() ? memberStarts.get(index) : fileSize;
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return (a + b - 1) / b;
+    }
+}
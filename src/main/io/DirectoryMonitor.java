@@ -1,6 +1,7 @@
 package main.io;
 
 import main.jobs.impl.ProcessFileJob;
+import main.service.FileLockManager;
 import main.service.MapService;
 import main.utils.FileUtils;
 
@@ -8,6 +9,8 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DirectoryMonitor implements Runnable {
@@ -15,14 +18,20 @@ public class DirectoryMonitor implements Runnable {
     private final AtomicBoolean isRunning;
     private final FileProcessor fileProcessor;
     private final MapService mapService;
+    private final FileLockManager fileLocks;
+    private final int pollIntervalMs;
     private final Map<String, Long> fileLastModifiedMap = new ConcurrentHashMap<>();
+    private final CountDownLatch initialRound = new CountDownLatch(1);
 
     public DirectoryMonitor(Path directoryPath, AtomicBoolean isRunning,
-                            FileProcessor fileProcessor, MapService mapService) {
+                            FileProcessor fileProcessor, MapService mapService, FileLockManager fileLocks,
+                            int pollIntervalMs) {
         this.directoryPath = directoryPath;
         this.isRunning = isRunning;
         this.fileProcessor = fileProcessor;
         this.mapService = mapService;
+        this.fileLocks = fileLocks;
+        this.pollIntervalMs = pollIntervalMs;
     }
 
     @Override
@@ -30,18 +39,24 @@ public class DirectoryMonitor implements Runnable {
         System.out.println("Monitoring directory: " + directoryPath);
 
         try {
-            // Process all files initially
-            checkAndProcessDirectoryFiles();
+            // Process all files initially, remembering their modification times so the first
+            // poll does not read them again
+            try {
+                checkForFileChanges(false);
+                checkAndProcessDirectoryFiles();
+            } finally {
+                initialRound.countDown();
+            }
 
             while (isRunning.get()) {
                 try {
-                    boolean changes = checkForFileChanges();
+                    boolean changes = checkForFileChanges(true);
 
                     if (changes) {
                         checkAndProcessDirectoryFiles();
                     }
 
-                    Thread.sleep(5000); // Check every 5 seconds
+                    Thread.sleep(pollIntervalMs);
                 } catch (IOException e) {
                     System.err.println("Error monitoring directory: " + e.getMessage());
                 } catch (InterruptedException e) {
@@ -56,7 +71,16 @@ public class DirectoryMonitor implements Runnable {
         System.out.println("Directory monitoring thread terminated.");
     }
 
-    private boolean checkForFileChanges() throws IOException {
+    /**
+     * Waits until the files found at startup have been processed.
+     *
+     * @return false if the timeout passed first
+     */
+    public boolean awaitInitialRound(long timeout, TimeUnit unit) throws InterruptedException {
+        return initialRound.await(timeout, unit);
+    }
+
+    private boolean checkForFileChanges(boolean logChanges) throws IOException {
         boolean changes = false;
 
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(directoryPath,
@@ -73,7 +97,9 @@ public class DirectoryMonitor implements Runnable {
                 if (!fileLastModifiedMap.containsKey(fileName) ||
                         fileLastModifiedMap.get(fileName) != lastModified) {
 
-                    System.out.println("Change detected in file: " + file.getFileName());
+                    if (logChanges) {
+                        System.out.println("Change detected in file: " + file.getFileName());
+                    }
                     fileLastModifiedMap.put(fileName, lastModified);
                     changes = true;
                 }
@@ -86,6 +112,8 @@ public class DirectoryMonitor implements Runnable {
             for (String deletedFile : deletedFiles) {
                 System.out.println("File deleted: " + Paths.get(deletedFile).getFileName());
                 fileLastModifiedMap.remove(deletedFile);
+                StationIndex.delete(Paths.get(deletedFile));
+                fileLocks.forget(Paths.get(deletedFile));
                 changes = true;
             }
         }
@@ -95,18 +123,24 @@ public class DirectoryMonitor implements Runnable {
 
     private void checkAndProcessDirectoryFiles() {
         try {
-            // Clear the in-memory map before processing all files
-            mapService.clearMap();
+            // Take this directory's totals out of the map before processing all of its files
+            mapService.clearMap(directoryPath);
 
+            List<Path> files = new ArrayList<>();
             try (DirectoryStream<Path> stream = Files.newDirectoryStream(directoryPath,
                     path -> FileUtils.isValidMeteoFile(path))) {
 
                 for (Path file : stream) {
-                    fileProcessor.processFile(file);
+                    files.add(file);
                 }
             }
+
+            // All files of the round share one chunk queue
+            fileProcessor.processFiles(files);
         } catch (IOException e) {
             System.err.println("Error processing directory files: " + e.getMessage());
+        } finally {
+            mapService.finishRebuild(directoryPath);
         }
     }
 }
\ No newline at end of file
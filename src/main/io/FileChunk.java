@@ -0,0 +1,31 @@
+package main.io;
+
+import java.nio.file.Path;
+
+public class FileChunk {
+    private final Path file;
+    private final long startPosition;
+    private final long endPosition;
+
+    public FileChunk(Path file, long startPosition, long endPosition) {
+        this.file = file;
+        this.startPosition = startPosition;
+        this.endPosition = endPosition;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getStartPosition() {
+        return startPosition;
+    }
+
+    public long getEndPosition() {
+        return endPosition;
+    }
+
+    public long getLength() {
+        return endPosition - startPosition;
+    }
+}
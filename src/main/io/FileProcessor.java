@@ -1,116 +1,318 @@
 package main.io;
 
+import main.cluster.ClusterCoordinator;
 import main.config.AppConfig;
+import main.data.BloomFilter;
+import main.data.ChunkStations;
 import main.data.StationData;
+import main.events.ChunkEvent;
+import main.events.ChunkMergeEvent;
+import main.events.ProcessingRoundEvent;
+import main.service.FileLockManager;
 import main.service.MapService;
+import main.service.MemoryGovernor;
+import main.service.MetricsService;
+import main.utils.FileUtils;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 
 public class FileProcessor {
+    private static final String MEMORY_OWNER = "ingest";
+    private static final long CHUNK_RESULT_ESTIMATE = 16 * 1024; // line buffer and per-letter partial map
+    private static final long LOCK_RETRY_INITIAL_MILLIS = 100;
+    private static final long LOCK_RETRY_MAX_MILLIS = 2000;
+
     private final AppConfig config;
+    private final Volume volume;
     private final ExecutorService executorService;
     private final MapService mapService;
-    private final ExecutorCompletionService<Map<Character, StationData>> completionService;
+    private final FileLockManager fileLocks;
+    private final MemoryGovernor memoryGovernor;
+    private final ChunkSplitter chunkSplitter;
+    private final ChunkParser chunkParser;
+    private final ClusterCoordinator clusterCoordinator;
+    private final MetricsService metrics;
 
-    public FileProcessor(AppConfig config, ExecutorService executorService, MapService mapService) {
+    /**
+     * @param volume the directory this processor ingests; its chunks run on the volume's I/O pool
+     *               and their totals are merged into the map as that directory's contribution
+     */
+    public FileProcessor(AppConfig config, Volume volume, MapService mapService,
+                         FileLockManager fileLocks, MemoryGovernor memoryGovernor, ByteScanner byteScanner,
+                         MetricsService metrics,
+                         ClusterCoordinator clusterCoordinator) {
         this.config = config;
-        this.executorService = executorService;
+        this.volume = volume;
+        this.executorService = volume.getIoPool();
         this.mapService = mapService;
-        this.completionService = new ExecutorCompletionService<>(executorService);
+        this.fileLocks = fileLocks;
+        this.memoryGovernor = memoryGovernor;
+        this.chunkSplitter = new ChunkSplitter(config);
+        this.chunkParser = new ChunkParser(config, byteScanner, config.getReadBufferSize(),
+                volume.getIoThreads());
+        this.clusterCoordinator = clusterCoordinator;
+        this.metrics = metrics;
     }
 
     public void processFile(Path file) {
-        String filePath = file.toString();
+        processFiles(Collections.singletonList(file));
+    }
 
-        // Check if file is already being processed
-        if (!mapService.markFileInUse(filePath)) {
-            System.out.println("File " + file.getFileName() + " is already being processed, skipping.");
-            return;
+    /**
+     * Processes the files, waiting for running scans to release any of them. Files that are
+     * being scanned are queued and retried with a growing delay until all are ingested.
+     */
+    public void processFiles(List<Path> files) {
+        List<Path> pendingFiles = processRound(files, false);
+        long retryDelay = LOCK_RETRY_INITIAL_MILLIS;
+
+        while (!pendingFiles.isEmpty()) {
+            try {
+                Thread.sleep(retryDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Path file : pendingFiles) {
+                    fileLocks.cancelWrite(file);
+                }
+                System.err.println("Processing interrupted, " + pendingFiles.size() + " queued file(s) not ingested.");
+                return;
+            }
+            retryDelay = Math.min(retryDelay * 2, LOCK_RETRY_MAX_MILLIS);
+            pendingFiles = processRound(pendingFiles, true);
         }
+    }
+
+    /**
+     * Processes a whole round of files through one shared queue of chunks, largest chunks first,
+     * so small files and the tails of large files keep every pool thread busy. Returns the files
+     * that are being scanned and have to be retried.
+     */
+    private List<Path> processRound(List<Path> files, boolean retry) {
+        Map<Path, Long> claimedFiles = new HashMap<>();
+        List<Path> deferredFiles = new ArrayList<>();
+        ProcessingRoundEvent roundEvent = new ProcessingRoundEvent();
+        roundEvent.begin();
 
         try {
-            // Determine file size for chunking
-            long fileSize = Files.size(file);
-            long chunkSize = config.getChunkSize();
-            int numChunks = (int) Math.ceil((double) fileSize / chunkSize);
+            List<FileChunk> chunks = new ArrayList<>();
+            Map<Path, Integer> remainingChunks = new HashMap<>();
+            Map<Path, StationIndex> stationIndexes = new HashMap<>();
+            Map<Path, Integer> chunkCounts = new HashMap<>();
+            // Per-station tables of parsed chunks, merged together with their letter totals
+            Map<FileChunk, ChunkStations> chunkStations = new ConcurrentHashMap<>();
+
+            for (Path file : files) {
+                long stamp = fileLocks.tryLockForWrite(file);
+                if (stamp == 0) {
+                    // Check if file is already being processed
+                    if (fileLocks.isWriteLocked(file)) {
+                        fileLocks.cancelWrite(file);
+                        System.out.println("File " + file.getFileName() + " is already being processed, skipping.");
+                    } else {
+                        if (!retry) {
+                            System.out.println("File " + file.getFileName() + " is being scanned, queueing it for retry.");
+                        }
+                        deferredFiles.add(file);
+                    }
+                    continue;
+                }
+                claimedFiles.put(file, stamp);
+
+                try {
+                    StationIndex stationIndex = StationIndex.begin(file);
+                    List<FileChunk> fileChunks = splitFile(file);
+                    stationIndexes.put(file, stationIndex);
+                    chunkCounts.put(file, fileChunks.size());
+                    if (fileChunks.isEmpty()) {
+                        completeFile(file, claimedFiles, stationIndexes, chunkCounts);
+                        continue;
+                    }
+                    chunks.addAll(fileChunks);
+                    remainingChunks.put(file, fileChunks.size());
+                } catch (IOException e) {
+                    System.err.println("Error reading file " + file.getFileName() + ". Continuing work.");
+                    completeFile(file, claimedFiles, stationIndexes, chunkCounts);
+                }
+            }
+
+            chunks.sort(Comparator.comparingLong(FileChunk::getLength).reversed());
+
+            roundEvent.jobName = MEMORY_OWNER;
+            roundEvent.fileCount = remainingChunks.size();
+            roundEvent.chunkCount = chunks.size();
+            for (FileChunk chunk : chunks) {
+                roundEvent.bytes += chunk.getLength();
+            }
+
+            ExecutorCompletionService<Map<Character, StationData>> completionService =
+                    new ExecutorCompletionService<>(executorService);
+            Map<Future<Map<Character, StationData>>, FileChunk> submittedChunks = new HashMap<>();
 
-            // Submit tasks for each chunk
-            for (int i = 0; i < numChunks; i++) {
-                final long startPosition = i * chunkSize;
-                final long endPosition = Math.min(startPosition + chunkSize, fileSize);
+            long chunkMemory = (long) config.getReadBufferSize() * config.getReadAheadDepth() + CHUNK_RESULT_ESTIMATE;
 
-                completionService.submit(() -> processFileChunk(file, startPosition, endPosition));
+            for (FileChunk chunk : chunks) {
+                // Admission control: wait until the chunk's buffers fit into the memory budget
+                try {
+                    long waitStart = System.nanoTime();
+                    memoryGovernor.acquire(MEMORY_OWNER, chunkMemory);
+                    metrics.recordSince(MetricsService.MEMORY_ADMISSION_WAIT, waitStart);
+                } catch (InterruptedException e) {
+                    System.err.println("Processing interrupted, not submitting remaining chunks.");
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                submittedChunks.put(completionService.submit(() -> {
+                    try {
+                        ChunkEvent chunkEvent = new ChunkEvent();
+                        chunkEvent.begin();
+                        long parseStart = System.nanoTime();
+                        Map<Character, StationData> result = processChunk(chunk,
+                                stationIndexes.get(chunk.getFile()), chunkStations);
+                        metrics.recordSince(MetricsService.CHUNK_PARSE, parseStart);
+                        long rows = recordChunk(chunk, result);
+
+                        chunkEvent.end();
+                        if (chunkEvent.shouldCommit()) {
+                            chunkEvent.jobName = MEMORY_OWNER;
+                            chunkEvent.file = chunk.getFile().toString();
+                            chunkEvent.startOffset = chunk.getStartPosition();
+                            chunkEvent.endOffset = chunk.getEndPosition();
+                            chunkEvent.rows = rows;
+                            chunkEvent.commit();
+                        }
+                        return result;
+                    } finally {
+                        memoryGovernor.release(MEMORY_OWNER, chunkMemory);
+                    }
+                }), chunk);
             }
 
-            for (int i = 0; i < numChunks; i++) {
+            for (int i = 0; i < submittedChunks.size(); i++) {
+                Future<Map<Character, StationData>> future;
+                try {
+                    future = completionService.take();
+                } catch (InterruptedException e) {
+                    System.err.println("Processing interrupted, abandoning remaining chunks.");
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                FileChunk chunk = submittedChunks.get(future);
                 try {
-                    Future<Map<Character, StationData>> future = completionService.take();
                     Map<Character, StationData> chunkResult = future.get();
 
                     // Update the in-memory map directly with atomic operations
+                    ChunkMergeEvent mergeEvent = new ChunkMergeEvent();
+                    mergeEvent.begin();
+                    long mergeStart = System.nanoTime();
+                    long rows = 0;
                     for (Map.Entry<Character, StationData> entry : chunkResult.entrySet()) {
-                        mapService.updateMap(entry.getKey(), entry.getValue());
+                        mapService.updateMap(volume.getDirectory(), entry.getKey(), entry.getValue());
+                        rows += entry.getValue().getStationCount();
+                    }
+                    ChunkStations stations = chunkStations.remove(chunk);
+                    if (stations != null) {
+                        mapService.mergeStations(volume.getDirectory(), stations);
+                    }
+                    metrics.recordSince(MetricsService.CHUNK_MERGE, mergeStart);
+                    roundEvent.rows += rows;
+
+                    mergeEvent.end();
+                    if (mergeEvent.shouldCommit()) {
+                        mergeEvent.jobName = MEMORY_OWNER;
+                        mergeEvent.file = chunk.getFile().toString();
+                        mergeEvent.startOffset = chunk.getStartPosition();
+                        mergeEvent.endOffset = chunk.getEndPosition();
+                        mergeEvent.rows = rows;
+                        mergeEvent.commit();
                     }
                 } catch (InterruptedException | ExecutionException e) {
                     System.err.println("Error processing chunk: " + e.getMessage());
-                    Thread.currentThread().interrupt();
                 }
-            }
 
-        } catch (IOException e) {
-            System.err.println("Error reading file " + file.getFileName() + ". Continuing work.");
+                Path file = chunk.getFile();
+                int remaining = remainingChunks.merge(file, -1, Integer::sum);
+                if (remaining == 0) {
+                    completeFile(file, claimedFiles, stationIndexes, chunkCounts);
+                }
+            }
         } finally {
-            // Mark file as no longer in use
-            mapService.markFileNotInUse(filePath);
+            // Release files whose chunks were abandoned
+            for (Map.Entry<Path, Long> claimed : claimedFiles.entrySet()) {
+                fileLocks.unlockWrite(claimed.getKey(), claimed.getValue());
+            }
+            roundEvent.commit();
         }
+        return deferredFiles;
     }
 
-    private Map<Character, StationData> processFileChunk(Path file, long startPosition, long endPosition) {
-        Map<Character, StationData> localMap = new HashMap<>();
-        boolean isCsv = file.toString().toLowerCase().endsWith(".csv");
-
-        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
-            raf.seek(startPosition);
+    private List<FileChunk> splitFile(Path file) throws IOException {
+        // Determine file size for chunking
+        long fileSize = Files.size(file);
+        if (FileUtils.isGzipFile(file)) {
+            // Only block-compressed archives can be cut; any other gzip stream is one chunk
+            List<Long> members = GzipSource.findMembers(file);
+            return members != null
+                    ? chunkSplitter.splitCompressed(file, fileSize, members, volume.getIoThreads())
+                    : List.of(new FileChunk(file, 0, fileSize));
+        }
+        return chunkSplitter.split(file, fileSize, volume.getIoThreads());
+    }
 
-            // Skip to next line boundary if not at the beginning
-            if (startPosition > 0) {
-                raf.readLine();
-            }
+    /**
+     * Parses a chunk, adds the Bloom filter of its station names to the file's index and leaves
+     * its per-station table for the merge.
+     */
+    private Map<Character, StationData> processChunk(FileChunk chunk, StationIndex stationIndex,
+                                                     Map<FileChunk, ChunkStations> chunkStations) {
+        ChunkStations stations;
+        Map<Character, StationData> result;
+        if (clusterCoordinator != null) {
+            // The chunk goes to a worker JVM; the pool thread just waits for its station table
+            stations = clusterCoordinator.processChunk(chunk, this::parseLocally);
+            result = ChunkParser.letters(stations);
+        } else {
+            stations = new ChunkStations();
+            result = chunkParser.parse(chunk, stations);
+        }
+        stationIndex.add(chunk, BloomFilter.of(stations));
+        chunkStations.put(chunk, stations);
+        return result;
+    }
 
-            // Process lines in this chunk until end position
-            String line;
-            while (raf.getFilePointer() < endPosition && (line = raf.readLine()) != null) {
-                // Skip header only if CSV and at beginning of file
-                if (isCsv && startPosition == 0 && raf.getFilePointer() == line.length() + 1) {
-                    continue;
-                }
+    private ChunkStations parseLocally(FileChunk chunk) {
+        ChunkStations stations = new ChunkStations();
+        chunkParser.parse(chunk, stations);
+        return stations;
+    }
 
-                // Faster parsing without using split
-                int semicolonIndex = line.indexOf(';');
-                if (semicolonIndex > 0 && semicolonIndex < line.length() - 1) {
-                    String stationName = line.substring(0, semicolonIndex).trim();
-                    if (!stationName.isEmpty()) {
-                        try {
-                            double temperature = Double.parseDouble(line.substring(semicolonIndex + 1).trim());
-                            char firstLetter = Character.toLowerCase(stationName.charAt(0));
-
-                            localMap.computeIfAbsent(firstLetter, k -> new StationData())
-                                    .update(1, temperature);
-                        } catch (NumberFormatException e) {
-                            // Skip invalid temperature readings
-                        }
-                    }
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error processing chunk of file " + file.getFileName());
+    private long recordChunk(FileChunk chunk, Map<Character, StationData> result) {
+        long rows = 0;
+        for (StationData data : result.values()) {
+            rows += data.getStationCount();
         }
+        metrics.increment(MetricsService.INGEST_ROWS, rows);
+        metrics.increment(MetricsService.INGEST_BYTES, chunk.getLength());
+        metrics.increment(MetricsService.INGEST_CHUNKS, 1);
+        return rows;
+    }
 
-        return localMap;
+    /**
+     * Saves the file's station index while the write lock is still held, so a LOOKUP waiting
+     * for the file reads the index of what it is about to read, then releases the file.
+     */
+    private void completeFile(Path file, Map<Path, Long> claimedFiles, Map<Path, StationIndex> stationIndexes,
+                              Map<Path, Integer> chunkCounts) {
+        StationIndex stationIndex = stationIndexes.get(file);
+        if (stationIndex != null) {
+            stationIndex.save(chunkCounts.get(file));
+        }
+        fileLocks.unlockWrite(file, claimedFiles.remove(file));
+        System.out.println("Finished processing file: " + file.getFileName());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,222 @@
+package main.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Streams the decompressed contents of a .gz file without ever holding the whole output.
+ * <p>
+ * Block-compressed files (BGZF, as written by {@code bgzip}) record each member's compressed
+ * size in its header, so members can be located without inflating anything and a source can
+ * start at any member. Those files are decompressed one member at a time, which lets chunks of
+ * the same file be inflated in parallel. Any other gzip file, including plain concatenated
+ * members, is streamed from the start in fixed-size pieces.
+ */
+public class GzipSource implements ByteSource {
+    private static final int STREAM_PIECE_SIZE = 1024 * 1024;
+    private static final int MAX_BLOCK_SIZE = 64 * 1024;
+    private static final int GZIP_HEADER_SIZE = 12;
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final InputStream stream;
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer block = ByteBuffer.allocate(MAX_BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private byte[] output;
+
+    private long position;
+    private long memberStart;
+
+    private GzipSource(FileChannel channel, long startPosition, boolean blockCompressed) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.position = startPosition;
+        this.memberStart = startPosition;
+        if (blockCompressed) {
+            this.stream = null;
+            this.output = new byte[MAX_BLOCK_SIZE];
+        } else {
+            this.stream = new GZIPInputStream(Channels.newInputStream(channel), MAX_BLOCK_SIZE);
+            this.output = new byte[STREAM_PIECE_SIZE];
+        }
+    }
+
+    /**
+     * Opens a source positioned at the member starting at {@code startPosition}. Only
+     * block-compressed files can start anywhere but offset 0.
+     */
+    public static GzipSource open(Path file, long startPosition) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            boolean blockCompressed = blockSize(channel, 0) > 0;
+            if (startPosition > 0 && !blockCompressed) {
+                throw new IOException(file.getFileName() + " is not block-compressed");
+            }
+            return new GzipSource(channel, startPosition, blockCompressed);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the compressed offset of every member of a block-compressed file, or null if
+     * the file is an ordinary gzip stream that can only be read from the start.
+     */
+    public static List<Long> findMembers(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> members = new ArrayList<>();
+            long position = 0;
+            while (position < size) {
+                long memberSize = blockSize(channel, position);
+                if (memberSize <= 0) {
+                    return null;
+                }
+                members.add(position);
+                position += memberSize;
+            }
+            return members.isEmpty() ? null : members;
+        }
+    }
+
+    /**
+     * Total size of the BGZF member at {@code position}, or -1 if no BGZF header starts there.
+     */
+    private static long blockSize(FileChannel channel, long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(GZIP_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(channel, header, position)) {
+            return -1;
+        }
+        // Magic, deflate method and the FEXTRA flag that carries the block size
+        if ((header.get(0) & 0xFF) != 0x1F || (header.get(1) & 0xFF) != 0x8B
+                || header.get(2) != 8 || (header.get(3) & 0x04) == 0) {
+            return -1;
+        }
+
+        int extraLength = header.getShort(10) & 0xFFFF;
+        ByteBuffer extra = ByteBuffer.allocate(extraLength).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(channel, extra, position + GZIP_HEADER_SIZE)) {
+            return -1;
+        }
+        int offset = 0;
+        while (offset + 4 <= extraLength) {
+            int subfieldLength = extra.getShort(offset + 2) & 0xFFFF;
+            if (extra.get(offset) == 'B' && extra.get(offset + 1) == 'C' && subfieldLength == 2
+                    && offset + 6 <= extraLength) {
+                return (extra.getShort(offset + 4) & 0xFFFF) + 1;
+            }
+            offset += 4 + subfieldLength;
+        }
+        return -1;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    @Override
+    public ByteBuffer next() throws IOException {
+        if (stream != null) {
+            int read = stream.readNBytes(output, 0, output.length);
+            return read > 0 ? ByteBuffer.wrap(output, 0, read) : null;
+        }
+
+        while (position < fileSize) {
+            long memberSize = blockSize(channel, position);
+            if (memberSize <= 0) {
+                throw new IOException("Corrupt gzip block at offset " + position);
+            }
+            int uncompressedSize = inflateBlock((int) memberSize);
+            memberStart = position;
+            position += memberSize;
+            // The empty end-of-file marker block carries no data
+            if (uncompressedSize > 0) {
+                return ByteBuffer.wrap(output, 0, uncompressedSize);
+            }
+        }
+        return null;
+    }
+
+    private int inflateBlock(int memberSize) throws IOException {
+        block.clear().limit(memberSize);
+        if (!readFully(channel, block, position)) {
+            throw new EOFException("Truncated gzip block at offset " + position);
+        }
+
+        int dataStart = GZIP_HEADER_SIZE + (block.getShort(10) & 0xFFFF);
+        int dataLength = memberSize - dataStart - GZIP_TRAILER_SIZE;
+        long expectedCrc = block.getInt(memberSize - 8) & 0xFFFFFFFFL;
+        int uncompressedSize = block.getInt(memberSize - 4);
+        if (dataLength < 0 || uncompressedSize < 0) {
+            throw new IOException("Corrupt gzip block at offset " + position);
+        }
+        if (uncompressedSize > output.length) {
+            output = new byte[uncompressedSize];
+        }
+
+        inflater.reset();
+        inflater.setInput(block.array(), dataStart, dataLength);
+        int inflated = 0;
+        try {
+            while (!inflater.finished() && inflated < uncompressedSize) {
+                int n = inflater.inflate(output, inflated, uncompressedSize - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt gzip block at offset " + position, e);
+        }
+
+        crc.reset();
+        crc.update(output, 0, inflated);
+        if (inflated != uncompressedSize || crc.getValue() != expectedCrc) {
+            throw new IOException("Checksum mismatch in gzip block at offset " + position);
+        }
+        return uncompressedSize;
+    }
+
+    /**
+     * Compressed offset of the member the last returned buffer came from. Always the start
+     * offset for files that are not block-compressed.
+     */
+    public long getMemberStart() {
+        return memberStart;
+    }
+
+    @Override
+    public void close() {
+        inflater.end();
+        try {
+            if (stream != null) {
+                stream.close();
+            }
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package main.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Splits the bytes delivered by a {@link ByteSource} into lines, using a {@link ByteScanner}
+ * to find the newlines. The returned line array is reused between calls.
+ */
+public class LineReader implements AutoCloseable {
+    private final ByteSource reader;
+    private final ByteScanner scanner;
+
+    private ByteBuffer buffer;
+    private byte[] line = new byte[256];
+    private int lineLength = 0;
+    private long position;
+    private boolean finished = false;
+
+    public LineReader(Path file, long startPosition, long readAheadLimit, BufferPool bufferPool,
+                      int readAheadDepth, ByteScanner scanner) throws IOException {
+        this(new ReadAheadReader(file, startPosition, readAheadLimit, bufferPool, readAheadDepth),
+                startPosition, scanner);
+    }
+
+    public LineReader(ByteSource reader, long startPosition, ByteScanner scanner) {
+        this.reader = reader;
+        this.scanner = scanner;
+        this.position = startPosition;
+    }
+
+    /**
+     * Reads the next line without its line terminator. Returns false at end of file.
+     */
+    public boolean nextLine() throws IOException {
+        lineLength = 0;
+        if (finished) {
+            return false;
+        }
+
+        while (true) {
+            if (buffer == null || !buffer.hasRemaining()) {
+                buffer = reader.next();
+                if (buffer == null) {
+                    // Last line of the file without a trailing newline
+                    finished = true;
+                    return lineLength > 0;
+                }
+            }
+
+            int from = buffer.position();
+            int limit = buffer.limit();
+            int newline = scanner.indexOf(buffer, from, limit, (byte) '\n');
+            int end = newline >= 0 ? newline : limit;
+
+            append(from, end - from);
+            buffer.position(newline >= 0 ? newline + 1 : limit);
+            position += buffer.position() - from;
+
+            if (newline >= 0) {
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                return true;
+            }
+        }
+    }
+
+    private void append(int from, int length) {
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        buffer.get(from, line, lineLength, length);
+        lineLength += length;
+    }
+
+    public byte[] getLine() {
+        return line;
+    }
+
+    public int getLineLength() {
+        return lineLength;
+    }
+
+    /**
+     * Offset where the next line starts, counted in the bytes delivered by the source
+     * (uncompressed bytes for a gzip file).
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+}
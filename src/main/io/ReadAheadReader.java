@@ -0,0 +1,155 @@
+package main.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a file sequentially through a ring of pooled direct buffers. While the caller
+ * parses one buffer, reads for the following buffers are already in flight, so disk
+ * and CPU work overlap.
+ */
+public class ReadAheadReader implements ByteSource {
+    private final AsynchronousFileChannel channel;
+    private final BufferPool bufferPool;
+    private final long fileSize;
+    private final long readAheadLimit;
+
+    private final ByteBuffer[] ring;
+    private final long[] slotPositions;
+    private final Future<?>[] pendingReads;
+
+    private long nextReadPosition;
+    private int head = 0;
+    private int current = -1;
+
+    /**
+     * @param readAheadLimit reads are prefetched only below this offset; anything past it
+     *                       (e.g. the tail of a line crossing a chunk boundary) is read on demand
+     */
+    public ReadAheadReader(Path file, long startPosition, long readAheadLimit,
+                           BufferPool bufferPool, int depth) throws IOException {
+        this.channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ);
+        this.bufferPool = bufferPool;
+        this.fileSize = channel.size();
+        this.readAheadLimit = Math.min(readAheadLimit, fileSize);
+        this.nextReadPosition = startPosition;
+
+        this.ring = new ByteBuffer[Math.max(1, depth)];
+        this.slotPositions = new long[ring.length];
+        this.pendingReads = new Future<?>[ring.length];
+
+        try {
+            for (int i = 0; i < ring.length; i++) {
+                ring[i] = bufferPool.acquire();
+                prefetch(i);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new InterruptedIOException("Interrupted while waiting for a read buffer");
+        }
+    }
+
+    /**
+     * Returns the next filled buffer, ready for reading, or null at end of file.
+     * The previously returned buffer is recycled for the next read-ahead and must not be used anymore.
+     */
+    @Override
+    public ByteBuffer next() throws IOException {
+        if (current >= 0) {
+            ring[current].clear();
+            prefetch(current);
+            current = -1;
+        }
+
+        int slot = head;
+        if (pendingReads[slot] == null) {
+            if (nextReadPosition >= fileSize) {
+                return null;
+            }
+            issueRead(slot);
+        }
+
+        ByteBuffer buffer = ring[slot];
+        awaitRead(slot);
+
+        // Short reads are completed synchronously so the slots following this one stay contiguous
+        while (buffer.hasRemaining() && slotPositions[slot] + buffer.position() < fileSize) {
+            int read = waitFor(channel.read(buffer, slotPositions[slot] + buffer.position()));
+            if (read <= 0) {
+                break;
+            }
+        }
+
+        buffer.flip();
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+
+        current = slot;
+        head = (head + 1) % ring.length;
+        return buffer;
+    }
+
+    private void prefetch(int slot) {
+        if (nextReadPosition < readAheadLimit) {
+            issueRead(slot);
+        }
+    }
+
+    private void issueRead(int slot) {
+        slotPositions[slot] = nextReadPosition;
+        pendingReads[slot] = channel.read(ring[slot], nextReadPosition);
+        nextReadPosition += ring[slot].capacity();
+    }
+
+    private void awaitRead(int slot) throws IOException {
+        Future<?> pending = pendingReads[slot];
+        pendingReads[slot] = null;
+        waitFor(pending);
+    }
+
+    private int waitFor(Future<?> pending) throws IOException {
+        try {
+            Object result = pending.get();
+            return result instanceof Integer ? (Integer) result : 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        // Outstanding reads must finish before their buffers go back to the pool
+        for (int i = 0; i < ring.length; i++) {
+            if (pendingReads[i] != null) {
+                try {
+                    pendingReads[i].get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ignored) {
+                }
+                pendingReads[i] = null;
+            }
+            if (ring[i] != null) {
+                bufferPool.release(ring[i]);
+                ring[i] = null;
+            }
+        }
+
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package main.io;
+
+import main.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Walks the records of a byte range of a measurement file without allocating per line. The
+ * range owns every line that starts inside it, so neighbouring ranges never see a line twice,
+ * and the CSV header is skipped. Each record exposes its line, the trimmed station name as a
+ * slice of that line and its temperature in tenths of a degree; the arrays are reused between
+ * records.
+ */
+public class RecordCursor implements AutoCloseable {
+    public static final int INVALID_TEMPERATURE = Integer.MIN_VALUE;
+    private static final int MAX_FAST_DIGITS = 8;
+
+    private final ByteScanner scanner;
+    private final LineReader lines;
+    private final GzipSource gzipSource;
+    private final long endPosition;
+
+    private byte[] line;
+    private int lineLength;
+    private int nameStart;
+    private int nameEnd;
+    private int separator;
+    private int temperatureTenths;
+    private boolean temperatureParsed;
+    private long linesRead;
+    private boolean finished;
+
+    public RecordCursor(Path file, long startPosition, long endPosition, BufferPool bufferPool,
+                        int readAheadDepth, ByteScanner scanner) throws IOException {
+        this.scanner = scanner;
+        this.endPosition = endPosition;
+
+        if (FileUtils.isGzipFile(file)) {
+            // Member boundaries fall anywhere inside a line, so a range skips everything up to its
+            // first newline and in turn reads past its last member up to the first newline after it
+            this.gzipSource = GzipSource.open(file, startPosition);
+            this.lines = new LineReader(gzipSource, 0, scanner);
+        } else {
+            // Start one byte early so a range beginning exactly on a line start keeps that line
+            long readPosition = startPosition > 0 ? startPosition - 1 : 0;
+            this.gzipSource = null;
+            this.lines = new LineReader(file, readPosition, endPosition, bufferPool, readAheadDepth, scanner);
+        }
+
+        try {
+            if (startPosition > 0 || FileUtils.isCsvFile(file)) {
+                // Partial line belonging to the previous range, or the CSV header
+                lines.nextLine();
+            }
+        } catch (IOException e) {
+            lines.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves to the next line that has a station name and something after the separator.
+     * Returns false at the end of the range.
+     */
+    public boolean next() throws IOException {
+        while (!finished) {
+            // Lines starting at or after the end position belong to the next range; a compressed
+            // range stops after the first line that ends in a member of the next range
+            boolean inRange = gzipSource != null
+                    ? gzipSource.getMemberStart() < endPosition
+                    : lines.getPosition() < endPosition;
+            if (!inRange || !lines.nextLine()) {
+                finished = true;
+                break;
+            }
+
+            linesRead++;
+            line = lines.getLine();
+            lineLength = lines.getLineLength();
+            separator = scanner.indexOf(line, 0, lineLength, (byte) ';');
+            if (separator <= 0 || separator >= lineLength - 1) {
+                continue;
+            }
+
+            // Same characters as String.trim(); UTF-8 continuation bytes are negative and never match
+            nameStart = 0;
+            nameEnd = separator;
+            while (nameStart < nameEnd && line[nameStart] >= 0 && line[nameStart] <= ' ') {
+                nameStart++;
+            }
+            while (nameEnd > nameStart && line[nameEnd - 1] >= 0 && line[nameEnd - 1] <= ' ') {
+                nameEnd--;
+            }
+            if (nameStart == nameEnd) {
+                continue;
+            }
+
+            temperatureParsed = false;
+            return true;
+        }
+        return false;
+    }
+
+    public byte[] getLine() {
+        return line;
+    }
+
+    public int getLineLength() {
+        return lineLength;
+    }
+
+    public int getNameStart() {
+        return nameStart;
+    }
+
+    public int getNameEnd() {
+        return nameEnd;
+    }
+
+    /**
+     * Temperature in tenths of a degree, parsed on first use so filters can reject a record on
+     * its name alone. Returns {@link #INVALID_TEMPERATURE} if the value is not a number.
+     */
+    public int getTemperatureTenths() {
+        if (!temperatureParsed) {
+            temperatureTenths = parseTenths(line, separator + 1, lineLength);
+            temperatureParsed = true;
+        }
+        return temperatureTenths;
+    }
+
+    /**
+     * Every line read so far, including malformed ones but not the CSV header.
+     */
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    /**
+     * Bytes consumed so far, counted in uncompressed bytes for a gzip file.
+     */
+    public long getPosition() {
+        return lines.getPosition();
+    }
+
+    /**
+     * Parses the usual "-12.3" form directly. Anything else (exponents, more decimals, a plus
+     * sign) goes through Double.parseDouble and is rounded to the nearest tenth.
+     */
+    private static int parseTenths(byte[] bytes, int from, int to) {
+        while (from < to && bytes[from] >= 0 && bytes[from] <= ' ') {
+            from++;
+        }
+        while (to > from && bytes[to - 1] >= 0 && bytes[to - 1] <= ' ') {
+            to--;
+        }
+
+        int position = from;
+        boolean negative = position < to && bytes[position] == '-';
+        if (negative) {
+            position++;
+        }
+
+        int value = 0;
+        int digits = 0;
+        while (position < to && bytes[position] >= '0' && bytes[position] <= '9' && digits < MAX_FAST_DIGITS) {
+            value = value * 10 + (bytes[position++] - '0');
+            digits++;
+        }
+
+        if (digits > 0) {
+            if (position == to) {
+                return negative ? -value * 10 : value * 10;
+            }
+            if (bytes[position] == '.' && position + 2 == to && bytes[position + 1] >= '0' && bytes[position + 1] <= '9') {
+                value = value * 10 + (bytes[position + 1] - '0');
+                return negative ? -value : value;
+            }
+        }
+        return parseTenthsSlow(bytes, from, to);
+    }
+
+    private static int parseTenthsSlow(byte[] bytes, int from, int to) {
+        try {
+            double value = Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+            double tenths = Math.rint(value * 10);
+            if (Double.isNaN(tenths) || tenths <= INVALID_TEMPERATURE || tenths > Integer.MAX_VALUE) {
+                return INVALID_TEMPERATURE;
+            }
+            return (int) tenths;
+        } catch (NumberFormatException e) {
+            return INVALID_TEMPERATURE;
+        }
+    }
+
+    @Override
+    public void close() {
+        lines.close();
+    }
+}
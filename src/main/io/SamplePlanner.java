@@ -0,0 +1,85 @@
+package main.io;
+
+import main.config.AppConfig;
+import main.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Picks a stratified random sample of a file. The chunks from {@link ChunkSplitter} are the
+ * strata, so every region of the file is represented; each chunk is cut into equal units and
+ * a random subset of them is read. Small units mean many samples per stratum, which keeps the
+ * variance estimate, and so the confidence interval, reliable on clustered data.
+ */
+public class SamplePlanner {
+    private static final int UNITS_PER_STRATUM = 1024;
+    private static final long MIN_UNIT_SIZE = 64 * 1024;
+    private static final long MAX_UNIT_SIZE = 1024 * 1024;
+    private static final int MIN_SAMPLED_UNITS = 4;
+
+    private final ChunkSplitter chunkSplitter;
+
+    public SamplePlanner(AppConfig config) {
+        this.chunkSplitter = new ChunkSplitter(config);
+    }
+
+    /**
+     * @param parallelism I/O threads of the file's volume, which sets the number of strata
+     */
+    public List<SampleStratum> plan(Path file, double fraction, Random random, int parallelism) throws IOException {
+        long fileSize = Files.size(file);
+        List<Long> members = null;
+        List<FileChunk> strata;
+
+        if (FileUtils.isGzipFile(file)) {
+            members = GzipSource.findMembers(file);
+            if (members == null) {
+                // A plain gzip stream can only be read from the start, so it is read whole
+                return fileSize > 0
+                        ? List.of(new SampleStratum(1, List.of(new FileChunk(file, 0, fileSize))))
+                        : List.of();
+            }
+            strata = chunkSplitter.splitCompressed(file, fileSize, members, parallelism);
+        } else {
+            strata = chunkSplitter.split(file, fileSize, parallelism);
+        }
+
+        List<SampleStratum> plan = new ArrayList<>();
+        for (FileChunk stratum : strata) {
+            List<FileChunk> units = cutUnits(stratum, members, fileSize);
+            int sampleSize = (int) Math.min(units.size(),
+                    Math.max(MIN_SAMPLED_UNITS, Math.ceil(fraction * units.size())));
+
+            List<FileChunk> sampled = new ArrayList<>(units);
+            Collections.shuffle(sampled, random);
+            sampled = new ArrayList<>(sampled.subList(0, sampleSize));
+            sampled.sort(Comparator.comparingLong(FileChunk::getStartPosition));
+            plan.add(new SampleStratum(units.size(), sampled));
+        }
+        return plan;
+    }
+
+    private static List<FileChunk> cutUnits(FileChunk stratum, List<Long> members, long fileSize) {
+        long unitSize = Math.max(MIN_UNIT_SIZE, Math.min(MAX_UNIT_SIZE, stratum.getLength() / UNITS_PER_STRATUM));
+
+        List<FileChunk> units = new ArrayList<>();
+        long unitStart = stratum.getStartPosition();
+        while (unitStart < stratum.getEndPosition()) {
+            long unitEnd = Math.min(unitStart + unitSize, stratum.getEndPosition());
+            if (members != null) {
+                // Compressed units have to start on a member
+                unitEnd = Math.min(ChunkSplitter.memberAtOrAfter(members, unitEnd, fileSize), stratum.getEndPosition());
+            }
+            units.add(new FileChunk(stratum.getFile(), unitStart, unitEnd));
+            unitStart = unitEnd;
+        }
+        return units;
+    }
+}
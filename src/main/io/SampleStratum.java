@@ -0,0 +1,25 @@
+package main.io;
+
+import java.util.List;
+
+/**
+ * One chunk of a file as a sampling stratum: how many equal units it was cut into and which
+ * of them were picked.
+ */
+public class SampleStratum {
+    private final int unitCount;
+    private final List<FileChunk> sampledUnits;
+
+    public SampleStratum(int unitCount, List<FileChunk> sampledUnits) {
+        this.unitCount = unitCount;
+        this.sampledUnits = sampledUnits;
+    }
+
+    public int getUnitCount() {
+        return unitCount;
+    }
+
+    public List<FileChunk> getSampledUnits() {
+        return sampledUnits;
+    }
+}
@@ -0,0 +1,31 @@
+package main.io;
+
+import java.nio.ByteBuffer;
+
+public class ScalarByteScanner implements ByteScanner {
+
+    @Override
+    public int indexOf(ByteBuffer buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int indexOf(byte[] array, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,160 @@
+package main.io;
+
+import main.data.BloomFilter;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Per-chunk Bloom filters of station names, kept in a {@code <file>.bloom} sidecar next to the
+ * measurement file. The sidecar starts with the file's fingerprint (size and modification time)
+ * as seen when ingest split it; an index whose fingerprint no longer matches is ignored.
+ * <pre>
+ * magic, version, size, modified, chunk count,
+ * per chunk: start, end, hash count, word count, words
+ * </pre>
+ */
+public class StationIndex {
+    private static final String SUFFIX = ".bloom";
+    private static final int MAGIC = 0x4d424c4d; // "MBLM"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final long size;
+    private final long modified;
+    private final List<Entry> entries;
+
+    private StationIndex(Path file, long size, long modified, List<Entry> entries) {
+        this.file = file;
+        this.size = size;
+        this.modified = modified;
+        this.entries = entries;
+    }
+
+    /**
+     * Starts an index for a file that is about to be split, taking its fingerprint now.
+     */
+    public static StationIndex begin(Path file) throws IOException {
+        return new StationIndex(file, Files.size(file), Files.getLastModifiedTime(file).toMillis(),
+                new ArrayList<>());
+    }
+
+    public synchronized void add(FileChunk chunk, BloomFilter filter) {
+        entries.add(new Entry(chunk, filter));
+    }
+
+    /**
+     * Writes the sidecar if every chunk added its filter, and removes any older one otherwise.
+     */
+    public synchronized void save(int chunkCount) {
+        Path indexFile = indexPath(file);
+        try {
+            if (entries.size() != chunkCount) {
+                Files.deleteIfExists(indexFile);
+                return;
+            }
+
+            entries.sort(Comparator.comparingLong(entry -> entry.chunk.getStartPosition()));
+            Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    long[] words = entry.filter.getWords();
+                    out.writeLong(entry.chunk.getStartPosition());
+                    out.writeLong(entry.chunk.getEndPosition());
+                    out.writeInt(entry.filter.getHashCount());
+                    out.writeInt(words.length);
+                    for (long word : words) {
+                        out.writeLong(word);
+                    }
+                }
+            }
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error writing station index of " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the index of a file, or returns null if it is missing, unreadable or stale.
+     */
+    public static StationIndex load(Path file) {
+        Path indexFile = indexPath(file);
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long size = in.readLong();
+            long modified = in.readLong();
+            if (size != Files.size(file) || modified != Files.getLastModifiedTime(file).toMillis()) {
+                return null;
+            }
+
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                FileChunk chunk = new FileChunk(file, in.readLong(), in.readLong());
+                int hashCount = in.readInt();
+                long[] words = new long[in.readInt()];
+                for (int w = 0; w < words.length; w++) {
+                    words[w] = in.readLong();
+                }
+                entries.add(new Entry(chunk, new BloomFilter(words, hashCount)));
+            }
+            return new StationIndex(file, size, modified, entries);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable station index of " + file.getFileName());
+            return null;
+        }
+    }
+
+    public static void delete(Path file) {
+        try {
+            Files.deleteIfExists(indexPath(file));
+        } catch (IOException e) {
+            System.err.println("Error deleting station index of " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private static Path indexPath(Path file) {
+        return file.resolveSibling(file.getFileName() + SUFFIX);
+    }
+
+    public int getChunkCount() {
+        return entries.size();
+    }
+
+    /**
+     * Chunks whose filter might contain the station, in file order.
+     */
+    public List<FileChunk> candidateChunks(String station) {
+        List<FileChunk> candidates = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.filter.mightContain(station)) {
+                candidates.add(entry.chunk);
+            }
+        }
+        return candidates;
+    }
+
+    private static class Entry {
+        private final FileChunk chunk;
+        private final BloomFilter filter;
+
+        Entry(FileChunk chunk, BloomFilter filter) {
+            this.chunk = chunk;
+            this.filter = filter;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package main.io;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Tests 8 bytes per step by treating a long as a vector of bytes ("SIMD within a register").
+ * Used when the Vector API module is not available.
+ */
+public class SwarByteScanner implements ByteScanner {
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    @Override
+    public int indexOf(ByteBuffer buffer, int from, int to, byte value) {
+        long pattern = broadcast(value);
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long matches = matchingBytes(buffer.getLong(i) ^ pattern);
+            if (matches != 0) {
+                return i + (bigEndian
+                        ? Long.numberOfLeadingZeros(matches)
+                        : Long.numberOfTrailingZeros(matches)) / Byte.SIZE;
+            }
+        }
+
+        for (; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int indexOf(byte[] array, int from, int to, byte value) {
+        long pattern = broadcast(value);
+
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long matches = matchingBytes((long) LONG_VIEW.get(array, i) ^ pattern);
+            if (matches != 0) {
+                return i + Long.numberOfLeadingZeros(matches) / Byte.SIZE;
+            }
+        }
+
+        for (; i < to; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long broadcast(byte value) {
+        return (value & 0xFFL) * 0x0101010101010101L;
+    }
+
+    // Sets the high bit of every zero byte. Exact (no carries between bytes), so it is safe to
+    // look for the first match from either end.
+    private static long matchingBytes(long word) {
+        return ~(((word & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | word | LOW_SEVEN_BITS);
+    }
+
+    @Override
+    public String getName() {
+        return "swar";
+    }
+}
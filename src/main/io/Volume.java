@@ -0,0 +1,60 @@
+package main.io;
+
+import main.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * One monitored directory and the I/O pool that reads its files. Ingest chunks, SCAN files and
+ * sample units of a volume only run on its own pool, so a slow disk queues its own work instead
+ * of holding threads the other volumes need.
+ */
+public class Volume {
+    private final Path directory;
+    private final int ioThreads;
+    private final ExecutorService ioPool;
+
+    public Volume(Path directory, int ioThreads) {
+        this.directory = directory;
+        this.ioThreads = ioThreads;
+        this.ioPool = Executors.newFixedThreadPool(ioThreads);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public ExecutorService getIoPool() {
+        return ioPool;
+    }
+
+    /**
+     * Adds the measurement files currently in the directory to {@code files}.
+     */
+    public void listFiles(List<Path> files) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                path -> FileUtils.isValidMeteoFile(path))) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+    }
+
+    /**
+     * True if the file lies directly in this volume's directory.
+     */
+    public boolean contains(Path file) {
+        Path parent = file.toAbsolutePath().normalize().getParent();
+        return parent != null && parent.equals(directory.toAbsolutePath().normalize());
+    }
+}
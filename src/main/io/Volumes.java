@@ -0,0 +1,97 @@
+package main.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All monitored volumes. Readers that span every directory list their files here and submit the
+ * work for each file to the pool of the volume it lives on.
+ */
+public class Volumes {
+    private final List<Volume> volumes = new ArrayList<>();
+
+    public Volumes(List<String> directoryPaths, List<Integer> ioThreads) {
+        for (int i = 0; i < directoryPaths.size(); i++) {
+            volumes.add(new Volume(Paths.get(directoryPaths.get(i)), ioThreads.get(i)));
+        }
+    }
+
+    public List<Volume> getVolumes() {
+        return volumes;
+    }
+
+    /**
+     * Measurement files of every volume. A directory that cannot be listed is reported and
+     * skipped, so the others are still read.
+     */
+    public List<Path> listFiles() {
+        List<Path> files = new ArrayList<>();
+        for (Volume volume : volumes) {
+            try {
+                volume.listFiles(files);
+            } catch (IOException e) {
+                System.err.println("Error listing " + volume.getDirectory() + ": " + e.getMessage());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Volume holding the file; files outside every monitored directory use the first one.
+     */
+    public Volume forFile(Path file) {
+        for (Volume volume : volumes) {
+            if (volume.contains(file)) {
+                return volume;
+            }
+        }
+        return volumes.get(0);
+    }
+
+    public ExecutorService poolFor(Path file) {
+        return forFile(file).getIoPool();
+    }
+
+    public int getTotalIoThreads() {
+        int total = 0;
+        for (Volume volume : volumes) {
+            total += volume.getIoThreads();
+        }
+        return total;
+    }
+
+    public void shutdown() {
+        for (Volume volume : volumes) {
+            volume.getIoPool().shutdown();
+        }
+    }
+
+    /**
+     * Waits up to the timeout for the pools to finish their queued work, then interrupts them.
+     */
+    public void awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            for (Volume volume : volumes) {
+                long remaining = deadline - System.nanoTime();
+                if (!volume.getIoPool().awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+                    volume.getIoPool().shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            shutdownNow();
+            throw e;
+        }
+    }
+
+    public void shutdownNow() {
+        for (Volume volume : volumes) {
+            volume.getIoPool().shutdownNow();
+        }
+    }
+}
@@ -3,6 +3,14 @@ package main.jobs;
 import main.processors.MeteorologicalDataProcessor;
 
 public abstract class Job {
+    /**
+     * Dispatcher lane of a job. Interactive jobs are answered ahead of queued bulk work,
+     * control jobs start immediately and are not counted against either lane.
+     */
+    public enum Lane {
+        CONTROL, INTERACTIVE, BULK
+    }
+
     private final String type;
 
     public Job(String type) {
@@ -13,6 +21,17 @@ public abstract class Job {
         return type;
     }
 
+    public Lane getLane() {
+        return Lane.BULK;
+    }
+
+    /**
+     * Name STATUS knows this job by from the moment it is queued, or null if it is not tracked.
+     */
+    public String getStatusName() {
+        return null;
+    }
+
     public abstract void execute(MeteorologicalDataProcessor processor);
 
     // Special job type for poison pill
@@ -26,4 +45,4 @@ public abstract class Job {
             // Does nothing, just signals the thread to terminate
         }
     }
-}
\ No newline at end of file
+}
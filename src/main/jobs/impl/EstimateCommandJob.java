@@ -0,0 +1,43 @@
+package main.jobs.impl;
+
+import main.jobs.Job;
+import main.processors.MeteorologicalDataProcessor;
+
+public class EstimateCommandJob extends Job {
+    private final double minTemp;
+    private final double maxTemp;
+    private final char letter;
+    private final double fraction;
+
+    /**
+     * @param letter the letter to estimate, or 0 for all letters
+     */
+    public EstimateCommandJob(double minTemp, double maxTemp, char letter, double fraction) {
+        super("ESTIMATE");
+        this.minTemp = minTemp;
+        this.maxTemp = maxTemp;
+        this.letter = letter;
+        this.fraction = fraction;
+    }
+
+    public double getMinTemp() {
+        return minTemp;
+    }
+
+    public double getMaxTemp() {
+        return maxTemp;
+    }
+
+    public char getLetter() {
+        return letter;
+    }
+
+    public double getFraction() {
+        return fraction;
+    }
+
+    @Override
+    public void execute(MeteorologicalDataProcessor processor) {
+        processor.executeEstimateCommand(minTemp, maxTemp, letter, fraction);
+    }
+}
@@ -8,6 +8,11 @@ public class ExportMapCommandJob extends Job {
         super("EXPORTMAP");
     }
 
+    @Override
+    public Lane getLane() {
+        return Lane.INTERACTIVE;
+    }
+
     @Override
     public void execute(MeteorologicalDataProcessor processor) {
         processor.executeExportMapCommand();
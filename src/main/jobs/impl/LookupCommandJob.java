@@ -0,0 +1,39 @@
+package main.jobs.impl;
+
+import main.jobs.Job;
+import main.processors.MeteorologicalDataProcessor;
+
+public class LookupCommandJob extends Job {
+    private final String station;
+    private final String outputFile;
+    private final String jobName;
+
+    public LookupCommandJob(String station, String outputFile, String jobName) {
+        super("LOOKUP");
+        this.station = station;
+        this.outputFile = outputFile;
+        this.jobName = jobName;
+    }
+
+    public String getStation() {
+        return station;
+    }
+
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    @Override
+    public String getStatusName() {
+        return jobName;
+    }
+
+    @Override
+    public void execute(MeteorologicalDataProcessor processor) {
+        processor.executeLookupCommand(station, outputFile, jobName);
+    }
+}
@@ -4,12 +4,24 @@ import main.jobs.Job;
 import main.processors.MeteorologicalDataProcessor;
 
 public class MapCommandJob extends Job {
-    public MapCommandJob() {
+    private final int windowMinutes;
+
+    public MapCommandJob(int windowMinutes) {
         super("MAP");
+        this.windowMinutes = windowMinutes;
+    }
+
+    public int getWindowMinutes() {
+        return windowMinutes;
+    }
+
+    @Override
+    public Lane getLane() {
+        return Lane.INTERACTIVE;
     }
 
     @Override
     public void execute(MeteorologicalDataProcessor processor) {
-        processor.executeMapCommand();
+        processor.executeMapCommand(windowMinutes);
     }
-}
\ No newline at end of file
+}
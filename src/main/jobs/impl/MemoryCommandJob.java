@@ -0,0 +1,20 @@
+package main.jobs.impl;
+
+import main.jobs.Job;
+import main.processors.MeteorologicalDataProcessor;
+
+public class MemoryCommandJob extends Job {
+    public MemoryCommandJob() {
+        super("MEMORY");
+    }
+
+    @Override
+    public Lane getLane() {
+        return Lane.INTERACTIVE;
+    }
+
+    @Override
+    public void execute(MeteorologicalDataProcessor processor) {
+        processor.executeMemoryCommand();
+    }
+}
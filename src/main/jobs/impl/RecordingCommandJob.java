@@ -0,0 +1,20 @@
+package main.jobs.impl;
+
+import main.jobs.Job;
+import main.processors.MeteorologicalDataProcessor;
+
+public class RecordingCommandJob extends Job {
+    private final String action;
+    private final String outputFile;
+
+    public RecordingCommandJob(String action, String outputFile) {
+        super("JFR");
+        this.action = action;
+        this.outputFile = outputFile;
+    }
+
+    @Override
+    public void execute(MeteorologicalDataProcessor processor) {
+        processor.executeRecordingCommand(action, outputFile);
+    }
+}
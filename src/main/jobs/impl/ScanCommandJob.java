@@ -9,18 +9,53 @@ public class ScanCommandJob extends Job {
     private final char letter;
     private final String outputFile;
     private final String jobName;
+    private final double approxFraction;
 
-    public ScanCommandJob(double minTemp, double maxTemp, char letter, String outputFile, String jobName) {
+    /**
+     * @param approxFraction share of each file to sample, or 0 for an exact scan
+     */
+    public ScanCommandJob(double minTemp, double maxTemp, char letter, String outputFile, String jobName,
+                          double approxFraction) {
         super("SCAN");
         this.minTemp = minTemp;
         this.maxTemp = maxTemp;
         this.letter = letter;
         this.outputFile = outputFile;
         this.jobName = jobName;
+        this.approxFraction = approxFraction;
+    }
+
+    public double getMinTemp() {
+        return minTemp;
+    }
+
+    public double getMaxTemp() {
+        return maxTemp;
+    }
+
+    public char getLetter() {
+        return letter;
+    }
+
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    @Override
+    public String getStatusName() {
+        return jobName;
+    }
+
+    public double getApproxFraction() {
+        return approxFraction;
     }
 
     @Override
     public void execute(MeteorologicalDataProcessor processor) {
-        processor.executeScanCommand(minTemp, maxTemp, letter, outputFile, jobName);
+        processor.executeScanCommand(minTemp, maxTemp, letter, outputFile, jobName, approxFraction);
     }
 }
\ No newline at end of file
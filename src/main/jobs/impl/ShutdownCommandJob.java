@@ -11,6 +11,11 @@ public class ShutdownCommandJob extends Job {
         this.saveJobs = saveJobs;
     }
 
+    @Override
+    public Lane getLane() {
+        return Lane.CONTROL;
+    }
+
     @Override
     public void execute(MeteorologicalDataProcessor processor) {
         processor.executeShutdownCommand(saveJobs);
@@ -0,0 +1,27 @@
+package main.jobs.impl;
+
+import main.jobs.Job;
+import main.processors.MeteorologicalDataProcessor;
+
+public class StationCommandJob extends Job {
+    private final String station;
+
+    public StationCommandJob(String station) {
+        super("STATION");
+        this.station = station;
+    }
+
+    public String getStation() {
+        return station;
+    }
+
+    @Override
+    public Lane getLane() {
+        return Lane.INTERACTIVE;
+    }
+
+    @Override
+    public void execute(MeteorologicalDataProcessor processor) {
+        processor.executeStationCommand(station);
+    }
+}
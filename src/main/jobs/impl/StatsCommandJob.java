@@ -0,0 +1,20 @@
+package main.jobs.impl;
+
+import main.jobs.Job;
+import main.processors.MeteorologicalDataProcessor;
+
+public class StatsCommandJob extends Job {
+    public StatsCommandJob() {
+        super("STATS");
+    }
+
+    @Override
+    public Lane getLane() {
+        return Lane.INTERACTIVE;
+    }
+
+    @Override
+    public void execute(MeteorologicalDataProcessor processor) {
+        processor.executeStatsCommand();
+    }
+}
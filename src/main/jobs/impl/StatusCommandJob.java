@@ -11,6 +11,15 @@ public class StatusCommandJob extends Job {
         this.jobName = jobName;
     }
 
+    public String getJobName() {
+        return jobName;
+    }
+
+    @Override
+    public Lane getLane() {
+        return Lane.INTERACTIVE;
+    }
+
     @Override
     public void execute(MeteorologicalDataProcessor processor) {
         processor.executeStatusCommand(jobName);
@@ -0,0 +1,298 @@
+package main.processors;
+
+import main.commands.CommandParser;
+import main.commands.JobFactory;
+import main.config.AppConfig;
+import main.jobs.Job;
+import main.jobs.impl.LookupCommandJob;
+import main.jobs.impl.ScanCommandJob;
+import main.jobs.impl.ShutdownCommandJob;
+import main.service.MetricsService;
+import main.service.ScanService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a command script instead of the interactive CLI. The whole script is validated before
+ * anything starts; blank lines and lines starting with '#' are skipped. Commands wait for the
+ * first ingest of every directory, then run in stages: the commands between two barriers
+ * (START, JFR, SHUTDOWN) are submitted together and run concurrently in their lanes, a barrier
+ * runs on its own once everything before it has finished. SHUTDOWN may only come last and is
+ * added when the script has none. Ends with a per-command wall time and throughput summary.
+ */
+public class BatchRunner {
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FAILED = 1;
+    public static final int EXIT_INVALID_SCRIPT = 2;
+
+    private static final Set<String> BARRIERS = Set.of("START", "JFR", "SHUTDOWN");
+    private static final double MB = 1024 * 1024;
+
+    private final MeteorologicalDataProcessor processor;
+    private final ScanService scanService;
+    private final MetricsService metrics;
+    private final long timeoutNanos;
+    private final CommandParser parser = new CommandParser();
+    private final JobFactory jobFactory = new JobFactory();
+
+    public BatchRunner(AppConfig config, MeteorologicalDataProcessor processor, ScanService scanService,
+                       MetricsService metrics) {
+        this.processor = processor;
+        this.scanService = scanService;
+        this.metrics = metrics;
+        this.timeoutNanos = TimeUnit.MINUTES.toNanos(config.getBatchTimeoutMinutes());
+    }
+
+    /**
+     * Runs the script and shuts the processor down.
+     *
+     * @return the exit status: {@link #EXIT_OK} if every command finished without error,
+     * {@link #EXIT_FAILED} otherwise, {@link #EXIT_INVALID_SCRIPT} if nothing was run
+     */
+    public int run(BufferedReader script) {
+        List<Command> commands;
+        try {
+            commands = parse(script);
+        } catch (IOException e) {
+            System.err.println("Error reading batch script: " + e.getMessage());
+            return EXIT_INVALID_SCRIPT;
+        }
+        if (commands == null) {
+            return EXIT_INVALID_SCRIPT;
+        }
+
+        long batchStart = System.nanoTime();
+        long deadline = batchStart + timeoutNanos;
+        processor.startHeadless();
+
+        long ingestBytes = metrics.getCounter(MetricsService.INGEST_BYTES);
+        boolean ingested = false;
+        try {
+            ingested = processor.awaitInitialIngest(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long ingestNanos = System.nanoTime() - batchStart;
+        ingestBytes = metrics.getCounter(MetricsService.INGEST_BYTES) - ingestBytes;
+        if (!ingested) {
+            System.err.println("Initial ingest did not finish in time, running the script anyway");
+        }
+
+        List<Command> stage = new ArrayList<>();
+        boolean timedOut = false;
+        for (Command command : commands) {
+            boolean barrier = BARRIERS.contains(command.job.getType());
+            if (barrier && !timedOut) {
+                timedOut = !runStage(stage, deadline);
+                stage.clear();
+            }
+
+            // After a timeout only the final SHUTDOWN still runs
+            boolean shutdown = command.job instanceof ShutdownCommandJob;
+            if (timedOut && !shutdown) {
+                command.status = "skipped";
+                continue;
+            }
+
+            stage.add(command);
+            if (barrier) {
+                // SHUTDOWN gets a grace period of its own, it has to run whatever happened before
+                runStage(stage, shutdown ? Math.max(deadline, System.nanoTime() + TimeUnit.MINUTES.toNanos(1))
+                        : deadline);
+                timedOut |= !shutdown && command.status.equals("timed out");
+                stage.clear();
+            }
+        }
+
+        return report(commands, ingested, ingestNanos, ingestBytes, System.nanoTime() - batchStart);
+    }
+
+    /**
+     * Reads and validates every line, printing each error; returns null if there were any.
+     */
+    private List<Command> parse(BufferedReader script) throws IOException {
+        List<Command> commands = new ArrayList<>();
+        boolean valid = true;
+        boolean shutdownSeen = false;
+        int lineNumber = 0;
+
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            String input = line.trim();
+            if (input.isEmpty() || input.startsWith("#")) {
+                continue;
+            }
+
+            if (shutdownSeen) {
+                System.err.println("Line " + lineNumber + ": commands after SHUTDOWN would never run");
+                valid = false;
+                continue;
+            }
+
+            try {
+                Map.Entry<String, Map<String, String>> parsedCommand = parser.parseCommand(input);
+                Job job = jobFactory.createJob(parsedCommand.getKey(), parsedCommand.getValue());
+                shutdownSeen = job instanceof ShutdownCommandJob;
+                commands.add(new Command(lineNumber, input, job));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Line " + lineNumber + ": " + e.getMessage());
+                valid = false;
+            }
+        }
+
+        if (!valid) {
+            return null;
+        }
+        if (!shutdownSeen) {
+            commands.add(new Command(0, "SHUTDOWN", new ShutdownCommandJob(false)));
+        }
+        return commands;
+    }
+
+    /**
+     * Submits the commands together and waits for all of them.
+     *
+     * @return false if some were still running at the deadline
+     */
+    private boolean runStage(List<Command> stage, long deadline) {
+        if (stage.isEmpty()) {
+            return true;
+        }
+
+        CountDownLatch done = new CountDownLatch(stage.size());
+        for (Command command : stage) {
+            command.timedJob = new TimedJob(command.job, done);
+            command.submittedAt = System.nanoTime();
+            if (!processor.submitJob(command.timedJob)) {
+                command.status = "rejected";
+                done.countDown();
+            }
+        }
+
+        boolean finished = false;
+        try {
+            finished = done.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Command command : stage) {
+            if (command.status != null) {
+                continue;
+            }
+            if (command.timedJob.endNanos == 0) {
+                command.status = "timed out";
+            } else {
+                command.status = command.timedJob.failed ? "failed" : "ok";
+            }
+        }
+        return finished;
+    }
+
+    private int report(List<Command> commands, boolean ingested, long ingestNanos, long ingestBytes,
+                       long batchNanos) {
+        System.out.println("Batch summary:");
+        System.out.printf("%5s  %-40s %-9s %10s %10s %8s%n", "line", "command", "status", "wall (ms)", "MB", "MB/s");
+        printRow("", "(initial ingest)", ingested ? "ok" : "timed out", ingestNanos, ingestBytes);
+
+        int succeeded = 0;
+        for (Command command : commands) {
+            long wallNanos = command.timedJob != null && command.timedJob.endNanos != 0
+                    ? command.timedJob.endNanos - command.submittedAt
+                    : -1;
+            printRow(command.lineNumber > 0 ? String.valueOf(command.lineNumber) : "-", command.text,
+                    command.status, wallNanos, bytesRead(command.job));
+            if (command.status.equals("ok")) {
+                succeeded++;
+            }
+        }
+
+        int exitStatus = ingested && succeeded == commands.size() ? EXIT_OK : EXIT_FAILED;
+        System.out.printf("%d of %d commands succeeded in %.1f s, exit status %d%n",
+                succeeded, commands.size(), batchNanos / 1e9, exitStatus);
+        return exitStatus;
+    }
+
+    private static void printRow(String line, String text, String status, long wallNanos, long bytes) {
+        String command = text.length() > 40 ? text.substring(0, 37) + "..." : text;
+        String wall = wallNanos >= 0 ? String.format("%.1f", wallNanos / 1e6) : "-";
+        String megabytes = bytes > 0 ? String.format("%.1f", bytes / MB) : "-";
+        String throughput = bytes > 0 && wallNanos > 0 ? String.format("%.1f", bytes / MB / (wallNanos / 1e9)) : "-";
+        System.out.printf("%5s  %-40s %-9s %10s %10s %8s%n", line, command, status, wall, megabytes, throughput);
+    }
+
+    /**
+     * Bytes read by commands that read measurement files; 0 for the others.
+     */
+    private long bytesRead(Job job) {
+        if (job instanceof ScanCommandJob) {
+            return scanService.getBytesRead(((ScanCommandJob) job).getJobName());
+        }
+        if (job instanceof LookupCommandJob) {
+            return scanService.getBytesRead(((LookupCommandJob) job).getJobName());
+        }
+        return 0;
+    }
+
+    private static class Command {
+        private final int lineNumber;
+        private final String text;
+        private final Job job;
+        private TimedJob timedJob;
+        private long submittedAt;
+        private String status;
+
+        Command(int lineNumber, String text, Job job) {
+            this.lineNumber = lineNumber;
+            this.text = text;
+            this.job = job;
+        }
+    }
+
+    /**
+     * Runs a job in its own lane and records when it ran and whether it threw.
+     */
+    private static class TimedJob extends Job {
+        private final Job job;
+        private final CountDownLatch done;
+        private volatile long endNanos;
+        private volatile boolean failed;
+
+        TimedJob(Job job, CountDownLatch done) {
+            super(job.getType());
+            this.job = job;
+            this.done = done;
+        }
+
+        @Override
+        public Lane getLane() {
+            return job.getLane();
+        }
+
+        @Override
+        public String getStatusName() {
+            return job.getStatusName();
+        }
+
+        @Override
+        public void execute(MeteorologicalDataProcessor processor) {
+            try {
+                job.execute(processor);
+            } catch (RuntimeException e) {
+                failed = true;
+                throw e;
+            } finally {
+                endNanos = System.nanoTime();
+                done.countDown();
+            }
+        }
+    }
+}
@@ -1,47 +1,223 @@
-// src/main/processors/JobProcessor.java
 package main.processors;
 
+import main.config.AppConfig;
 import main.jobs.Job;
+import main.service.MetricsService;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Priority dispatcher for submitted jobs. Queued interactive jobs are started ahead of bulk work,
+ * each lane runs at most its configured number of jobs at a time on a shared worker pool, and bulk
+ * jobs start in submission order, so SCANs take turns instead of overtaking each other. Control
+ * jobs start at once. A poison pill drains the lanes: everything queued before it still runs,
+ * later submissions are rejected.
+ */
 public class JobProcessor implements Runnable {
-    private final BlockingQueue<Runnable> jobQueue;
-    private final AtomicBoolean isRunning;
     private final MeteorologicalDataProcessor processor;
+    private final MetricsService metrics;
+    private final Map<Job.Lane, LaneState> lanes = new EnumMap<>(Job.Lane.class);
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final CountDownLatch terminated = new CountDownLatch(1);
 
-    public JobProcessor(BlockingQueue<Runnable> jobQueue, AtomicBoolean isRunning,
-                        MeteorologicalDataProcessor processor) {
-        this.jobQueue = jobQueue;
-        this.isRunning = isRunning;
+    // Guarded by this
+    private final Set<Thread> workerThreads = new HashSet<>();
+    private boolean accepting = true;
+    private boolean pillTaken;
+
+    public JobProcessor(AppConfig config, MeteorologicalDataProcessor processor, MetricsService metrics) {
         this.processor = processor;
+        this.metrics = metrics;
+
+        lanes.put(Job.Lane.INTERACTIVE, new LaneState(config.getInteractiveLaneSize(),
+                MetricsService.INTERACTIVE_QUEUE_WAIT, MetricsService.INTERACTIVE_RUN));
+        lanes.put(Job.Lane.BULK, new LaneState(config.getBulkLaneSize(),
+                MetricsService.BULK_QUEUE_WAIT, MetricsService.BULK_RUN));
+        metrics.registerGauge(MetricsService.INTERACTIVE_QUEUE_DEPTH, () -> getQueueDepth(Job.Lane.INTERACTIVE));
+        metrics.registerGauge(MetricsService.BULK_QUEUE_DEPTH, () -> getQueueDepth(Job.Lane.BULK));
+    }
+
+    /**
+     * @return false if the job was rejected because the processor is shutting down
+     */
+    public synchronized boolean submit(Job job) {
+        if (!accepting) {
+            System.err.println("Shutting down, " + job.getType() + " job rejected");
+            return false;
+        }
+
+        if (job.getLane() == Job.Lane.CONTROL) {
+            workers.execute(() -> runJob(job));
+            return true;
+        }
+
+        lanes.get(job.getLane()).queue.add(new QueuedJob(job, System.nanoTime()));
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Stops accepting jobs and queues a poison pill behind the bulk work. Waits until every job
+     * queued before it has run, or the timeout passes; the caller's own job is not waited for.
+     *
+     * @return false if jobs were still running when the timeout passed
+     */
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (this) {
+            if (accepting) {
+                accepting = false;
+                lanes.get(Job.Lane.BULK).queue.add(new QueuedJob(new Job.PoisonPill(), System.nanoTime()));
+                notifyAll();
+            }
+        }
+        return terminated.await(timeout, unit);
+    }
+
+    public synchronized long getQueueDepth(Job.Lane lane) {
+        return lanes.get(lane).queue.size();
     }
 
     @Override
     public void run() {
         System.out.println("Job processor started");
 
-        while (isRunning.get() || !jobQueue.isEmpty()) {
-            try {
-                Runnable job = jobQueue.take();
+        try {
+            synchronized (this) {
+                while (true) {
+                    LaneState lane = nextLane();
+                    if (lane == null) {
+                        if (pillTaken && isIdle()) {
+                            break;
+                        }
+                        wait();
+                        continue;
+                    }
 
-                // Check if this is a poison pill job
-                if (job instanceof Job.PoisonPill) {
-                    System.out.println("Received poison pill, job processor terminating...");
-                    break;
-                }
+                    QueuedJob next = lane.queue.poll();
+                    if (next.job instanceof Job.PoisonPill) {
+                        System.out.println("Received poison pill, job processor draining...");
+                        pillTaken = true;
+                        continue;
+                    }
 
-                // Execute the job
-                job.run();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            } catch (Exception e) {
-                System.err.println("Error processing job: " + e.getMessage());
+                    lane.active++;
+                    workers.execute(() -> runQueued(lane, next));
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon();
+        } finally {
+            workers.shutdown();
+            terminated.countDown();
         }
 
         System.out.println("Job processor thread terminated.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Picks the lane to start a job from: interactive first, then bulk. The poison pill needs no
+     * free slot, it only has to reach the head of its queue.
+     */
+    private LaneState nextLane() {
+        LaneState interactive = lanes.get(Job.Lane.INTERACTIVE);
+        if (!interactive.queue.isEmpty() && interactive.active < interactive.limit) {
+            return interactive;
+        }
+
+        LaneState bulk = lanes.get(Job.Lane.BULK);
+        QueuedJob head = bulk.queue.peek();
+        if (head != null && (bulk.active < bulk.limit || head.job instanceof Job.PoisonPill)) {
+            return bulk;
+        }
+        return null;
+    }
+
+    private boolean isIdle() {
+        for (LaneState lane : lanes.values()) {
+            if (lane.active > 0 || !lane.queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void runQueued(LaneState lane, QueuedJob queued) {
+        metrics.recordSince(lane.waitMetric, queued.queuedAt);
+        synchronized (this) {
+            workerThreads.add(Thread.currentThread());
+        }
+
+        long runStart = System.nanoTime();
+        try {
+            runJob(queued.job);
+        } finally {
+            metrics.recordSince(lane.runMetric, runStart);
+            synchronized (this) {
+                workerThreads.remove(Thread.currentThread());
+                lane.active--;
+                notifyAll();
+            }
+        }
+    }
+
+    private void runJob(Job job) {
+        try {
+            job.execute(processor);
+            metrics.increment(MetricsService.JOBS_EXECUTED, 1);
+        } catch (Exception e) {
+            System.err.println("Error processing job: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Interrupts the running lane jobs and drops the queued ones when the drain is cut short.
+     */
+    private synchronized void abandon() {
+        accepting = false;
+        for (Thread thread : workerThreads) {
+            thread.interrupt();
+        }
+
+        int dropped = 0;
+        for (LaneState lane : lanes.values()) {
+            for (QueuedJob queued : lane.queue) {
+                if (!(queued.job instanceof Job.PoisonPill)) {
+                    dropped++;
+                }
+            }
+            lane.queue.clear();
+        }
+        if (dropped > 0) {
+            System.out.println("Discarded " + dropped + " queued jobs");
+        }
+    }
+
+    private static class LaneState {
+        private final int limit;
+        private final String waitMetric;
+        private final String runMetric;
+        private final Deque<QueuedJob> queue = new ArrayDeque<>();
+        private int active;
+
+        LaneState(int limit, String waitMetric, String runMetric) {
+            this.limit = limit;
+            this.waitMetric = waitMetric;
+            this.runMetric = runMetric;
+        }
+    }
+
+    private static class QueuedJob {
+        private final Job job;
+        private final long queuedAt;
+
+        QueuedJob(Job job, long queuedAt) {
+            this.job = job;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package main.processors;
 
+import main.cluster.ClusterCoordinator;
 import main.config.AppConfig;
 import main.data.StationData;
+import main.io.ByteScanner;
+import main.io.ByteScanners;
 import main.io.DirectoryMonitor;
 import main.io.FileProcessor;
+import main.io.Volume;
+import main.io.Volumes;
+import main.jobs.Job;
+import main.server.QueryServer;
+import main.service.FileLockManager;
 import main.service.MapService;
+import main.service.MemoryGovernor;
+import main.service.MetricsService;
+import main.service.ReadShares;
+import main.service.RecordingService;
 import main.service.ReportService;
+import main.service.SampleEstimator;
 import main.service.ScanService;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -20,70 +36,149 @@ public class MeteorologicalDataProcessor {
 
     // Services
     private final MapService mapService;
+    private final MemoryGovernor memoryGovernor;
+    private final FileLockManager fileLocks;
+    private final MetricsService metricsService;
+    private final RecordingService recordingService = new RecordingService();
     private final ScanService scanService;
+    private final SampleEstimator sampleEstimator;
     private final ReportService reportService;
 
-    // IO components
-    private final DirectoryMonitor directoryMonitor;
-    private final FileProcessor fileProcessor;
+    // IO components, one monitor and file processor per volume
+    private final Volumes volumes;
+    private final List<DirectoryMonitor> directoryMonitors = new ArrayList<>();
+    private final List<FileProcessor> fileProcessors = new ArrayList<>();
 
     // Processors
     private final CommandProcessor commandProcessor;
     private final JobProcessor jobProcessor;
+    private final QueryServer queryServer;
+    private final ClusterCoordinator clusterCoordinator;
 
     // Execution components
-    private final BlockingQueue<Runnable> jobQueue = new LinkedBlockingQueue<>();
-    private final ExecutorService fileProcessorService;
     private final ScheduledExecutorService scheduledService;
 
     // Threads
-    private Thread directoryMonitorThread;
+    private final List<Thread> directoryMonitorThreads = new ArrayList<>();
     private Thread jobProcessorThread;
     private Thread commandThread;
+    private Thread queryServerThread;
+    private Thread clusterCoordinatorThread;
 
     public MeteorologicalDataProcessor(String directory) {
-        this.config = new AppConfig(directory);
+        this(new AppConfig(directory));
+    }
+
+    public MeteorologicalDataProcessor(AppConfig config) {
+        this.config = config;
 
         // Initialize execution components
-        this.fileProcessorService = Executors.newFixedThreadPool(config.getThreadPoolSize());
+        this.volumes = new Volumes(config.getDirectoryPaths(), config.getVolumeIoThreads());
         this.scheduledService = Executors.newSingleThreadScheduledExecutor();
 
         // Initialize services
-        this.mapService = new MapService();
-        this.scanService = new ScanService(config, fileProcessorService, mapService.getFilesInUse());
-        this.reportService = new ReportService(mapService);
+        this.metricsService = new MetricsService();
+        this.mapService = new MapService(config, metricsService);
+        this.metricsService.registerGauge(MetricsService.DISTINCT_STATIONS, mapService::getStationCount);
+        this.metricsService.registerGauge(MetricsService.STATION_STORE_BYTES, mapService::getStationStoreBytes);
+        this.memoryGovernor = new MemoryGovernor(config.getMemoryBudgetBytes());
+        ByteScanner byteScanner = ByteScanners.select(config.getByteScanner());
+        System.out.println("Using " + byteScanner.getName() + " byte scanner");
+        this.fileLocks = new FileLockManager();
+        ReadShares readShares = new ReadShares(volumes);
+        this.sampleEstimator = new SampleEstimator(config, volumes, fileLocks, readShares, memoryGovernor, byteScanner);
+        this.scanService = new ScanService(config, volumes, fileLocks, sampleEstimator, readShares,
+                memoryGovernor, byteScanner, metricsService);
+        this.reportService = new ReportService(mapService, metricsService);
 
         // Initialize IO components
-        this.fileProcessor = new FileProcessor(config, fileProcessorService, mapService);
-        this.directoryMonitor = new DirectoryMonitor(
-                Paths.get(config.getDirectoryPath()),
-                isRunning,
-                fileProcessor,
-                mapService
-        );
+        this.clusterCoordinator = config.getClusterPort() > 0 ? new ClusterCoordinator(config, isRunning) : null;
+        for (Volume volume : volumes.getVolumes()) {
+            FileProcessor fileProcessor = new FileProcessor(config, volume, mapService, fileLocks, memoryGovernor,
+                    byteScanner, metricsService, clusterCoordinator);
+            fileProcessors.add(fileProcessor);
+            directoryMonitors.add(new DirectoryMonitor(
+                    volume.getDirectory(),
+                    isRunning,
+                    fileProcessor,
+                    mapService,
+                    fileLocks,
+                    config.getDirectoryPollIntervalMs()
+            ));
+        }
 
         // Initialize processors
-        this.jobProcessor = new JobProcessor(jobQueue, isRunning, this);
-        this.commandProcessor = new CommandProcessor(jobQueue, isRunning, this);
+        this.jobProcessor = new JobProcessor(config, this, metricsService);
+        this.commandProcessor = new CommandProcessor(isRunning, this);
+        this.queryServer = config.getServerPort() > 0
+                ? new QueryServer(config.getServerPort(), isRunning, this, mapService, scanService, sampleEstimator)
+                : null;
     }
 
     public void start(boolean loadJobs) {
+        startHeadless();
+
+        // Start the CLI thread
+        commandThread = new Thread(commandProcessor);
+        commandThread.setName("CommandReader");
+        commandThread.start();
+
+        // Optionally load saved jobs
+        if (loadJobs) {
+            loadSavedJobs();
+        }
+    }
+
+    /**
+     * Runs a command script instead of reading commands from the console, see {@link BatchRunner}.
+     *
+     * @return the exit status of the batch
+     */
+    public int runBatch(BufferedReader script) {
+        return new BatchRunner(config, this, scanService, metricsService).run(script);
+    }
+
+    /**
+     * Starts everything except the CLI thread.
+     */
+    void startHeadless() {
         System.out.println("Starting Meteorological Data Processor...");
 
-        // Start the directory monitoring thread
-        directoryMonitorThread = new Thread(directoryMonitor);
-        directoryMonitorThread.setName("DirectoryMonitor");
-        directoryMonitorThread.start();
+        // Start the cluster coordinator before the first round so spawned workers can connect
+        if (clusterCoordinator != null) {
+            clusterCoordinatorThread = new Thread(clusterCoordinator);
+            clusterCoordinatorThread.setName("ClusterCoordinator");
+            clusterCoordinatorThread.start();
+            try {
+                if (!clusterCoordinator.awaitWorkers(config.getClusterConnectTimeoutSeconds(), TimeUnit.SECONDS)) {
+                    System.out.println("Cluster: not every worker connected in time, starting without them");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Start one directory monitoring thread per volume
+        for (int i = 0; i < directoryMonitors.size(); i++) {
+            Thread directoryMonitorThread = new Thread(directoryMonitors.get(i));
+            directoryMonitorThread.setName(directoryMonitors.size() > 1
+                    ? "DirectoryMonitor-" + (i + 1)
+                    : "DirectoryMonitor");
+            directoryMonitorThread.start();
+            directoryMonitorThreads.add(directoryMonitorThread);
+        }
 
         // Start the job processor thread
         jobProcessorThread = new Thread(jobProcessor);
         jobProcessorThread.setName("JobProcessor");
         jobProcessorThread.start();
 
-        // Start the CLI thread
-        commandThread = new Thread(commandProcessor);
-        commandThread.setName("CommandReader");
-        commandThread.start();
+        // Start the query server thread
+        if (queryServer != null) {
+            queryServerThread = new Thread(queryServer);
+            queryServerThread.setName("QueryServer");
+            queryServerThread.start();
+        }
 
         // Schedule periodic report
         scheduledService.scheduleAtFixedRate(
@@ -93,74 +188,164 @@ public class MeteorologicalDataProcessor {
                 TimeUnit.MINUTES
         );
 
-        // Optionally load saved jobs
-        if (loadJobs) {
-            loadSavedJobs();
+        // Optionally append metrics to a CSV file
+        if (config.getMetricsCsvPath() != null) {
+            scheduledService.scheduleAtFixedRate(
+                    () -> metricsService.writeCsvRow(config.getMetricsCsvPath()),
+                    config.getMetricsIntervalSeconds(),
+                    config.getMetricsIntervalSeconds(),
+                    TimeUnit.SECONDS
+            );
+        }
+    }
+
+    /**
+     * Waits until every directory monitor has processed the files it found at startup.
+     *
+     * @return false if the timeout passed first
+     */
+    boolean awaitInitialIngest(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (DirectoryMonitor directoryMonitor : directoryMonitors) {
+            if (!directoryMonitor.awaitInitialRound(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands a job to the job processor, which starts it from the job's lane.
+     *
+     * @return false if the job was rejected because the processor is shutting down
+     */
+    public boolean submitJob(Job job) {
+        // Named jobs are known to STATUS before they start, so they are registered first
+        String jobName = job.getStatusName();
+        if (jobName != null) {
+            scanService.markQueued(jobName);
         }
+        boolean accepted = jobProcessor.submit(job);
+        if (!accepted && jobName != null) {
+            scanService.unmarkQueued(jobName);
+        }
+        return accepted;
     }
 
     // Delegating methods for job execution
     public void processFile(Path file) {
-        fileProcessor.processFile(file);
+        fileProcessors.get(volumes.getVolumes().indexOf(volumes.forFile(file))).processFile(file);
+    }
+
+    public void executeScanCommand(double min, double max, char letter, String outputFile, String jobName,
+                                   double approxFraction) {
+        scanService.executeScan(min, max, letter, outputFile, jobName, approxFraction);
+    }
+
+    public void executeLookupCommand(String station, String outputFile, String jobName) {
+        scanService.executeLookup(station, outputFile, jobName);
     }
 
-    public void executeScanCommand(double min, double max, char letter, String outputFile, String jobName) {
-        scanService.executeScan(min, max, letter, outputFile, jobName);
+    public void executeEstimateCommand(double min, double max, char letter, double fraction) {
+        try {
+            System.out.print(sampleEstimator.estimate(min, max, letter, fraction, "ESTIMATE", null).format());
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Estimate failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public void executeStatusCommand(String jobName) {
         scanService.checkJobStatus(jobName);
     }
 
-    public void executeMapCommand() {
-        mapService.displayMap();
+    public void executeMapCommand(int windowMinutes) {
+        mapService.displayMap(windowMinutes);
+    }
+
+    public void executeStationCommand(String station) {
+        mapService.displayStation(station);
     }
 
     public void executeExportMapCommand() {
         reportService.exportMapToFile();
     }
 
+    public void executeMemoryCommand() {
+        memoryGovernor.displayUsage();
+    }
+
+    public void executeStatsCommand() {
+        metricsService.displayStats();
+    }
+
+    public void executeRecordingCommand(String action, String outputFile) {
+        switch (action) {
+            case "start":
+                recordingService.startRecording();
+                break;
+            case "dump":
+                recordingService.dumpRecording(outputFile);
+                break;
+            default:
+                recordingService.stopRecording();
+                break;
+        }
+    }
+
     public void executeShutdownCommand(boolean saveJobs) {
         System.out.println("Executing shutdown command...");
 
+        isRunning.set(false);
+
+        // Saved jobs are left for the next start: save them while still queued and skip the drain
         if (saveJobs) {
             scanService.saveUnexecutedJobs();
         }
 
-        isRunning.set(false);
-
-        // Send poison pill to job processor
+        // Otherwise let the jobs queued so far finish before anything is torn down
         try {
-            jobQueue.put(() -> System.out.println("Poison pill received"));
+            if (!jobProcessor.drain(saveJobs ? 0 : 10, TimeUnit.SECONDS)) {
+                System.out.println("Jobs still running, stopping them");
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
 
+        if (jobProcessorThread != null && jobProcessorThread.isAlive()) {
+            jobProcessorThread.interrupt();
+        }
+
+        if (queryServer != null) {
+            queryServer.stop();
+        }
+
+        if (clusterCoordinator != null) {
+            clusterCoordinator.stop();
+        }
+
         // Shutdown thread pools gracefully
-        fileProcessorService.shutdown();
+        volumes.shutdown();
         scheduledService.shutdown();
 
         try {
-            if (!fileProcessorService.awaitTermination(10, TimeUnit.SECONDS)) {
-                fileProcessorService.shutdownNow();
-            }
+            volumes.awaitTermination(10, TimeUnit.SECONDS);
 
             if (!scheduledService.awaitTermination(10, TimeUnit.SECONDS)) {
                 scheduledService.shutdownNow();
             }
         } catch (InterruptedException e) {
-            fileProcessorService.shutdownNow();
+            volumes.shutdownNow();
             scheduledService.shutdownNow();
             Thread.currentThread().interrupt();
         }
 
         // Interrupt all threads if they're still running
-        if (directoryMonitorThread != null && directoryMonitorThread.isAlive()) {
-            directoryMonitorThread.interrupt();
-        }
-
-        if (jobProcessorThread != null && jobProcessorThread.isAlive()) {
-            jobProcessorThread.interrupt();
+        for (Thread directoryMonitorThread : directoryMonitorThreads) {
+            if (directoryMonitorThread.isAlive()) {
+                directoryMonitorThread.interrupt();
+            }
         }
 
         System.out.println("Shutdown complete.");
@@ -0,0 +1,430 @@
+package main.server;
+
+import main.commands.CommandParser;
+import main.commands.JobFactory;
+import main.data.Estimate;
+import main.jobs.Job;
+import main.jobs.impl.EstimateCommandJob;
+import main.jobs.impl.MapCommandJob;
+import main.jobs.impl.ScanCommandJob;
+import main.jobs.impl.StatusCommandJob;
+import main.processors.MeteorologicalDataProcessor;
+import main.service.MapService;
+import main.service.SampleEstimator;
+import main.service.ScanService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Local TCP endpoint that accepts the same commands as the CLI, one per line, from many clients
+ * on a single selector thread. Every response ends with a line holding a single ".".
+ *
+ * MAP and STATUS are answered right away from snapshots. SCAN without --output streams the
+ * matching lines back over the connection; a slow client only slows its own scan. Streamed
+ * scans and ESTIMATE run in their job's lane like any queued job, so they share its limits and
+ * the shutdown drain. Any other command is queued exactly as if it had been typed on the CLI.
+ */
+public class QueryServer implements Runnable {
+    private static final String END_OF_RESPONSE = ".";
+    private static final String STREAM_OUTPUT = "-";
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int WRITE_BATCH_SIZE = 64 * 1024;
+    private static final int MAX_STREAMED_LINES_IN_FLIGHT = 8192;
+    private static final long SELECT_TIMEOUT_MS = 500;
+
+    private final int port;
+    private final AtomicBoolean isRunning;
+    private final MeteorologicalDataProcessor processor;
+    private final MapService mapService;
+    private final ScanService scanService;
+    private final SampleEstimator sampleEstimator;
+    private final CommandParser parser = new CommandParser();
+    private final JobFactory jobFactory = new JobFactory();
+    private final Queue<ClientConnection> writeRequests = new ConcurrentLinkedQueue<>();
+    private volatile Selector selector;
+    private int streamedScanCounter = 0;
+
+    public QueryServer(int port, AtomicBoolean isRunning, MeteorologicalDataProcessor processor,
+                       MapService mapService, ScanService scanService, SampleEstimator sampleEstimator) {
+        this.port = port;
+        this.isRunning = isRunning;
+        this.processor = processor;
+        this.mapService = mapService;
+        this.scanService = scanService;
+        this.sampleEstimator = sampleEstimator;
+    }
+
+    @Override
+    public void run() {
+        try (Selector openedSelector = Selector.open();
+             ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            selector = openedSelector;
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("Query server listening on " + serverChannel.getLocalAddress());
+
+            while (isRunning.get()) {
+                selector.select(SELECT_TIMEOUT_MS);
+
+                ClientConnection requested;
+                while ((requested = writeRequests.poll()) != null) {
+                    requested.onWriteRequested();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(serverChannel, key);
+                }
+            }
+
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof ClientConnection) {
+                    ((ClientConnection) key.attachment()).close();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Query server error: " + e.getMessage());
+        }
+
+        System.out.println("Query server terminated.");
+    }
+
+    public void stop() {
+        Selector current = selector;
+        if (current != null) {
+            current.wakeup();
+        }
+    }
+
+    private void handleKey(ServerSocketChannel serverChannel, SelectionKey key) {
+        ClientConnection connection = (ClientConnection) key.attachment();
+        try {
+            if (key.isValid() && key.isAcceptable()) {
+                SocketChannel channel = serverChannel.accept();
+                if (channel != null) {
+                    channel.configureBlocking(false);
+                    SelectionKey clientKey = channel.register(selector, SelectionKey.OP_READ);
+                    clientKey.attach(new ClientConnection(channel, clientKey));
+                }
+            }
+            if (connection != null && key.isValid() && key.isReadable()) {
+                connection.read();
+            }
+            if (connection != null && key.isValid() && key.isWritable()) {
+                connection.write();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (connection != null) {
+                connection.close();
+            } else {
+                System.err.println("Query server could not accept a connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private void handleCommand(ClientConnection connection, String input) {
+        Map.Entry<String, Map<String, String>> parsedCommand = parser.parseCommand(input);
+        String commandName = parsedCommand.getKey();
+        Map<String, String> args = parsedCommand.getValue();
+
+        try {
+            switch (commandName) {
+                case "MAP":
+                    MapCommandJob mapJob = (MapCommandJob) jobFactory.createJob(commandName, args);
+                    connection.respond(mapService.formatMap(mapJob.getWindowMinutes()));
+                    break;
+                case "STATUS":
+                    StatusCommandJob statusJob = (StatusCommandJob) jobFactory.createJob(commandName, args);
+                    connection.respond(scanService.getJobStatus(statusJob.getJobName()));
+                    break;
+                case "SCAN":
+                    if (!args.containsKey("--output") && !args.containsKey("-o")) {
+                        args.put("--output", STREAM_OUTPUT);
+                    }
+                    if (!args.containsKey("--job") && !args.containsKey("-j")) {
+                        args.put("--job", "remote-scan-" + (++streamedScanCounter));
+                    }
+                    ScanCommandJob scanJob = (ScanCommandJob) jobFactory.createJob(commandName, args);
+                    if (scanJob.getOutputFile().equals(STREAM_OUTPUT)) {
+                        streamScan(connection, scanJob);
+                    } else {
+                        queueJob(connection, scanJob);
+                    }
+                    break;
+                case "ESTIMATE":
+                    answerEstimate(connection, (EstimateCommandJob) jobFactory.createJob(commandName, args));
+                    break;
+                default:
+                    queueJob(connection, jobFactory.createJob(commandName, args));
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            connection.respond("ERROR " + e.getMessage());
+        }
+    }
+
+    private void queueJob(ClientConnection connection, Job job) {
+        if (processor.submitJob(job)) {
+            connection.respond("OK " + job.getType() + " queued");
+        } else {
+            connection.respond("ERROR " + job.getType() + " rejected, shutting down");
+        }
+    }
+
+    /**
+     * Queues work that answers over the connection. The client's following commands wait until
+     * it has finished.
+     */
+    private void queueAnswer(ClientConnection connection, Job command, Runnable answer) {
+        connection.busy = true;
+        if (!processor.submitJob(new AnswerJob(command, answer))) {
+            connection.busy = false;
+            connection.respond("ERROR " + command.getType() + " rejected, shutting down");
+        }
+    }
+
+    private void streamScan(ClientConnection connection, ScanCommandJob scanJob) {
+        FutureTask<?> task = new FutureTask<>(() -> {
+            try {
+                scanService.streamScan(scanJob.getMinTemp(), scanJob.getMaxTemp(), scanJob.getLetter(),
+                        scanJob.getApproxFraction(), scanJob.getJobName(), connection::streamLine);
+            } catch (IOException | ExecutionException e) {
+                connection.enqueue("ERROR scan failed: " + e.getMessage(), false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                connection.enqueue(END_OF_RESPONSE, false);
+                connection.busy = false;
+                connection.requestWrite();
+            }
+        }, null);
+        queueAnswer(connection, scanJob, () -> {
+            scanService.registerJob(scanJob.getJobName(), task);
+            task.run();
+        });
+    }
+
+    private void answerEstimate(ClientConnection connection, EstimateCommandJob estimateJob) {
+        queueAnswer(connection, estimateJob, () -> {
+            try {
+                Estimate estimate = sampleEstimator.estimate(estimateJob.getMinTemp(), estimateJob.getMaxTemp(),
+                        estimateJob.getLetter(), estimateJob.getFraction(), "remote-estimate", null);
+                for (String line : estimate.format().split("\\R")) {
+                    connection.enqueue(line, false);
+                }
+            } catch (IOException | ExecutionException e) {
+                connection.enqueue("ERROR estimate failed: " + e.getMessage(), false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                connection.enqueue(END_OF_RESPONSE, false);
+                connection.busy = false;
+                connection.requestWrite();
+            }
+        });
+    }
+
+    /**
+     * Runs the answer to a remote command in the lane of that command.
+     */
+    private static final class AnswerJob extends Job {
+        private final Job command;
+        private final Runnable answer;
+
+        private AnswerJob(Job command, Runnable answer) {
+            super(command.getType());
+            this.command = command;
+            this.answer = answer;
+        }
+
+        @Override
+        public Lane getLane() {
+            return command.getLane();
+        }
+
+        @Override
+        public String getStatusName() {
+            return command.getStatusName();
+        }
+
+        @Override
+        public void execute(MeteorologicalDataProcessor processor) {
+            answer.run();
+        }
+    }
+
+    private static final class OutgoingLine {
+        private final String text;
+        private final boolean streamed;
+
+        private OutgoingLine(String text, boolean streamed) {
+            this.text = text;
+            this.streamed = streamed;
+        }
+    }
+
+    private class ClientConnection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+        private final Queue<String> pendingCommands = new ArrayDeque<>();
+        private final Queue<OutgoingLine> outbox = new ConcurrentLinkedQueue<>();
+        // Bounds how far a streamed SCAN can run ahead of a slow client
+        private final Semaphore streamPermits = new Semaphore(MAX_STREAMED_LINES_IN_FLIGHT);
+        private final AtomicBoolean writeRequested = new AtomicBoolean(false);
+        private ByteBuffer writeBuffer;
+        private volatile boolean busy = false;
+        private volatile boolean closed = false;
+
+        private ClientConnection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        // Selector thread
+        private void read() throws IOException {
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                byte b = readBuffer.get();
+                if (b == '\n') {
+                    pendingCommands.add(partialLine.toString(StandardCharsets.UTF_8).trim());
+                    partialLine.reset();
+                } else if (partialLine.size() < MAX_LINE_LENGTH) {
+                    partialLine.write(b);
+                } else {
+                    throw new IOException("Command line too long");
+                }
+            }
+            processPendingCommands();
+        }
+
+        // Selector thread; a streamed SCAN holds back the following commands of this client
+        private void processPendingCommands() {
+            while (!busy && !closed && !pendingCommands.isEmpty()) {
+                String input = pendingCommands.poll();
+                if (!input.isEmpty()) {
+                    handleCommand(this, input);
+                }
+            }
+        }
+
+        // Selector thread
+        private void respond(String response) {
+            for (String line : response.split("\\R")) {
+                enqueue(line, false);
+            }
+            enqueue(END_OF_RESPONSE, false);
+            requestWrite();
+        }
+
+        // Stream worker thread
+        private void streamLine(String line) {
+            try {
+                streamPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new IOException("Interrupted while streaming"));
+            }
+            if (closed) {
+                throw new UncheckedIOException(new IOException("Connection closed"));
+            }
+            enqueue(line, true);
+            requestWrite();
+        }
+
+        private void enqueue(String line, boolean streamed) {
+            if (!closed) {
+                outbox.add(new OutgoingLine(line, streamed));
+            }
+        }
+
+        private void requestWrite() {
+            if (!closed && writeRequested.compareAndSet(false, true)) {
+                writeRequests.add(this);
+                Selector current = selector;
+                if (current != null) {
+                    current.wakeup();
+                }
+            }
+        }
+
+        // Selector thread
+        private void onWriteRequested() {
+            if (key.isValid()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+            processPendingCommands();
+        }
+
+        // Selector thread
+        private void write() throws IOException {
+            while (true) {
+                if (writeBuffer == null || !writeBuffer.hasRemaining()) {
+                    writeBuffer = nextWriteBatch();
+                    if (writeBuffer == null) {
+                        writeRequested.set(false);
+                        if (!outbox.isEmpty() && writeRequested.compareAndSet(false, true)) {
+                            continue;
+                        }
+                        key.interestOps(SelectionKey.OP_READ);
+                        processPendingCommands();
+                        return;
+                    }
+                }
+
+                channel.write(writeBuffer);
+                if (writeBuffer.hasRemaining()) {
+                    return; // Socket buffer is full, wait for the next OP_WRITE
+                }
+            }
+        }
+
+        private ByteBuffer nextWriteBatch() {
+            StringBuilder batch = new StringBuilder();
+            int streamedLines = 0;
+            OutgoingLine line;
+            while (batch.length() < WRITE_BATCH_SIZE && (line = outbox.poll()) != null) {
+                batch.append(line.text).append('\n');
+                if (line.streamed) {
+                    streamedLines++;
+                }
+            }
+            streamPermits.release(streamedLines);
+            return batch.length() == 0 ? null : ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void close() {
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            outbox.clear();
+            // Wake a stream worker waiting for permits so it notices the closed connection
+            streamPermits.release(MAX_STREAMED_LINES_IN_FLIGHT);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package main.service;
+
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Per-file read/write coordination between ingest and SCAN. Scans of the same file share read
+ * access and ingest takes exclusive access. Nothing here blocks a writer: an ingest that cannot
+ * get a file is retried by its caller, and while it waits new readers are held back so a steady
+ * stream of scans cannot starve it. The lock of a deleted file is dropped once nobody holds it;
+ * every change to an entry goes through the map, so a lock is never taken on a dropped entry.
+ */
+public class FileLockManager {
+    private static final long READ_RETRY_MILLIS = 20;
+
+    private final ConcurrentHashMap<Path, FileLock> locks = new ConcurrentHashMap<>();
+
+    private static class FileLock {
+        final StampedLock lock = new StampedLock();
+        volatile boolean writerWaiting;
+        // Guarded by the map entry
+        boolean deleted;
+
+        boolean isIdle() {
+            return !lock.isReadLocked() && !lock.isWriteLocked() && !writerWaiting;
+        }
+
+        // Value to keep in the map after a change
+        FileLock orNullIfDropped() {
+            return deleted && isIdle() ? null : this;
+        }
+    }
+
+    private static Path key(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Returns a read stamp, or 0 if the file is being ingested or an ingest is waiting for it.
+     */
+    public long tryLockForRead(Path file) {
+        long[] stamp = new long[1];
+        locks.compute(key(file), (k, fileLock) -> {
+            FileLock current = fileLock != null ? fileLock : new FileLock();
+            stamp[0] = current.writerWaiting ? 0 : current.lock.tryReadLock();
+            current.deleted = false;
+            return current;
+        });
+        return stamp[0];
+    }
+
+    /**
+     * Waits until the file can be read.
+     */
+    public long lockForRead(Path file) throws InterruptedException {
+        long stamp;
+        while ((stamp = tryLockForRead(file)) == 0) {
+            Thread.sleep(READ_RETRY_MILLIS);
+        }
+        return stamp;
+    }
+
+    public void unlockRead(Path file, long stamp) {
+        locks.computeIfPresent(key(file), (k, fileLock) -> {
+            fileLock.lock.unlockRead(stamp);
+            return fileLock.orNullIfDropped();
+        });
+    }
+
+    /**
+     * Returns a write stamp, or 0 if the file is locked. A failed attempt holds back new readers
+     * until the writer gets the lock or gives up with {@link #cancelWrite}.
+     */
+    public long tryLockForWrite(Path file) {
+        long[] stamp = new long[1];
+        locks.compute(key(file), (k, fileLock) -> {
+            FileLock current = fileLock != null ? fileLock : new FileLock();
+            stamp[0] = current.lock.tryWriteLock();
+            current.writerWaiting = stamp[0] == 0;
+            current.deleted = false;
+            return current;
+        });
+        return stamp[0];
+    }
+
+    public void cancelWrite(Path file) {
+        locks.computeIfPresent(key(file), (k, fileLock) -> {
+            fileLock.writerWaiting = false;
+            return fileLock.orNullIfDropped();
+        });
+    }
+
+    public void unlockWrite(Path file, long stamp) {
+        locks.computeIfPresent(key(file), (k, fileLock) -> {
+            fileLock.lock.unlockWrite(stamp);
+            return fileLock.orNullIfDropped();
+        });
+    }
+
+    /**
+     * True while another ingest holds the file.
+     */
+    public boolean isWriteLocked(Path file) {
+        FileLock fileLock = locks.get(key(file));
+        return fileLock != null && fileLock.lock.isWriteLocked();
+    }
+
+    /**
+     * Drops the lock of a deleted file, at once if nobody holds it, otherwise on its last release.
+     */
+    public void forget(Path file) {
+        locks.computeIfPresent(key(file), (k, fileLock) -> {
+            fileLock.deleted = true;
+            return fileLock.orNullIfDropped();
+        });
+    }
+}
@@ -1,41 +1,193 @@
 package main.service;
 
+import main.config.AppConfig;
+import main.data.ChunkStations;
+import main.data.RollingWindows;
 import main.data.StationData;
+import main.data.StationStore;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MapService {
     private final Map<Character, StationData> inMemoryMap = new ConcurrentHashMap<>();
-    private final Set<String> filesInUse = Collections.synchronizedSet(new HashSet<>());
+    // What each monitored directory added, so one directory can be re-read without touching the others
+    private final Map<Path, Map<Character, StationData>> contributions = new ConcurrentHashMap<>();
+    // Old contribution of each directory being re-read; the rolling windows only see the difference
+    private final Map<Path, Map<Character, StationData>> rebuildBaselines = new ConcurrentHashMap<>();
+    // Per-station totals of each monitored directory, off-heap
+    private final Map<Path, StationStore> stationStores = new ConcurrentHashMap<>();
+    private final AppConfig config;
+    private final MetricsService metrics;
+    private final RollingWindows rollingWindows = new RollingWindows(TimeUnit.HOURS.toMillis(1));
+    private final AtomicLong version = new AtomicLong();
 
-    public MapService() {
+    public MapService(AppConfig config, MetricsService metrics) {
+        this.config = config;
+        this.metrics = metrics;
     }
 
-    public void clearMap() {
-        inMemoryMap.clear();
+    /**
+     * Takes everything the directory added back out of the map, before it is read again. Until
+     * {@link #finishRebuild(Path)} the directory's updates reach the map but not the rolling
+     * windows.
+     */
+    public void clearMap(Path source) {
+        StationStore stationStore = stationStores.get(source);
+        if (stationStore != null) {
+            stationStore.clear();
+        }
+
+        Map<Character, StationData> removed = contributions.remove(source);
+        if (removed == null) {
+            return;
+        }
+
+        rebuildBaselines.put(source, removed);
+        for (Map.Entry<Character, StationData> entry : removed.entrySet()) {
+            StationData data = entry.getValue();
+            inMemoryMap.get(entry.getKey()).update(-data.getStationCount(), -data.getTemperatureSum());
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * Ends the re-read of a directory by recording the difference between its new and old totals
+     * in the rolling windows, so a slow rebuild never shows up there as a drop.
+     */
+    public void finishRebuild(Path source) {
+        Map<Character, StationData> baseline = rebuildBaselines.remove(source);
+        if (baseline == null) {
+            return;
+        }
+
+        Map<Character, StationData> current = contributions.getOrDefault(source, Map.of());
+        Set<Character> letters = new HashSet<>(baseline.keySet());
+        letters.addAll(current.keySet());
+        long now = System.currentTimeMillis();
+        for (char letter : letters) {
+            StationData before = baseline.getOrDefault(letter, new StationData());
+            StationData after = current.getOrDefault(letter, new StationData());
+            int count = after.getStationCount() - before.getStationCount();
+            double sum = after.getTemperatureSum() - before.getTemperatureSum();
+            if (count != 0 || sum != 0) {
+                rollingWindows.add(letter, count, sum, now);
+            }
+        }
+    }
+
+    public void updateMap(Path source, char key, StationData newData) {
+        long updateStart = System.nanoTime();
+        int count = newData.getStationCount();
+        double sum = newData.getTemperatureSum();
+        contributions.computeIfAbsent(source, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> new StationData()).update(count, sum);
+        inMemoryMap.computeIfAbsent(key, k -> new StationData()).update(count, sum);
+        if (!rebuildBaselines.containsKey(source)) {
+            rollingWindows.add(key, count, sum, System.currentTimeMillis());
+        }
+        version.incrementAndGet();
+        metrics.recordSince(MetricsService.MAP_UPDATE, updateStart);
     }
 
-    public void updateMap(char key, StationData newData) {
-        inMemoryMap.compute(key, (k, existingData) -> {
-            if (existingData == null) {
-                return newData;
+    /**
+     * Adds a chunk's per-station totals to the directory's station store.
+     */
+    public void mergeStations(Path source, ChunkStations stations) {
+        stationStores.computeIfAbsent(source, k -> new StationStore(config.getStationStoreBytes(),
+                Paths.get(config.getStationSpillDirectory()))).merge(stations);
+    }
+
+    public void displayStation(String station) {
+        StationStore.Aggregate total = null;
+        for (StationStore stationStore : stationStores.values()) {
+            StationStore.Aggregate aggregate = stationStore.get(station);
+            if (aggregate == null) {
+                continue;
+            }
+            if (total == null) {
+                total = aggregate;
             } else {
-                existingData.update(newData.getStationCount(), newData.getTemperatureSum());
-                return existingData;
+                total.add(aggregate);
             }
-        });
+        }
+
+        long missing = getReadingsWithoutStations();
+        if (total == null) {
+            System.out.println(missing > 0
+                    ? "No per-station readings for station " + station + ", but " + missing
+                    + " readings of the map have no per-station data"
+                    : "No readings for station " + station);
+            return;
+        }
+        System.out.printf("%s: %d readings, mean %.1f, min %.1f, max %.1f%n",
+                station, total.getCount(), total.getMean(), total.getMin(), total.getMax());
+        if (missing > 0) {
+            System.out.println("Incomplete: " + missing + " readings of the map have no per-station data");
+        }
+    }
+
+    /**
+     * Readings counted in the map but not in the station stores; 0 once every merged chunk has
+     * added its stations. Only a chunk between its two merges should make it differ.
+     */
+    public long getReadingsWithoutStations() {
+        long mapRows = 0;
+        for (StationData data : inMemoryMap.values()) {
+            mapRows += data.getStationCount();
+        }
+        long stationRows = 0;
+        for (StationStore stationStore : stationStores.values()) {
+            stationRows += stationStore.getRowCount();
+        }
+        return Math.max(0, mapRows - stationRows);
     }
 
-    public void displayMap() {
+    /**
+     * Stations in the station stores; one reported by several directories counts once for each.
+     */
+    public long getStationCount() {
+        long count = 0;
+        for (StationStore stationStore : stationStores.values()) {
+            count += stationStore.size();
+        }
+        return count;
+    }
+
+    /**
+     * Bytes taken by the station stores, in direct memory or spill files.
+     */
+    public long getStationStoreBytes() {
+        long bytes = 0;
+        for (StationStore stationStore : stationStores.values()) {
+            bytes += stationStore.getTableBytes();
+        }
+        return bytes;
+    }
+
+    public void displayMap(int windowMinutes) {
+        System.out.print(formatMap(windowMinutes));
+    }
+
+    /**
+     * Formats a snapshot of the map as the 13 lines printed by MAP. With a window of
+     * zero the whole map is shown, otherwise the data ingested in the last minutes.
+     */
+    public String formatMap(int windowMinutes) {
         if (inMemoryMap.isEmpty()) {
-            System.out.println("Map is not yet available");
-            return;
+            return String.format("Map is not yet available%n");
         }
 
         // Take a snapshot of the map to prevent concurrent modification issues
-        Map<Character, StationData> mapSnapshot = new HashMap<>(inMemoryMap);
+        Map<Character, StationData> mapSnapshot = windowMinutes > 0
+                ? rollingWindows.aggregate(TimeUnit.MINUTES.toMillis(windowMinutes), System.currentTimeMillis())
+                : new HashMap<>(inMemoryMap);
 
+        StringBuilder output = new StringBuilder();
         char[] alphabet = "abcdefghijklmnopqrstuvwxyz".toCharArray();
         for (int i = 0; i < alphabet.length; i += 2) {
             StationData data1 = mapSnapshot.getOrDefault(alphabet[i], new StationData());
@@ -43,27 +195,19 @@ public class MapService {
                     ? mapSnapshot.getOrDefault(alphabet[i + 1], new StationData())
                     : new StationData();
 
-            System.out.printf("%c: %d - %.1f | %c: %d - %.1f%n",
+            output.append(String.format("%c: %d - %.1f | %c: %d - %.1f%n",
                     alphabet[i], data1.getStationCount(), data1.getTemperatureSum(),
                     (i + 1 < alphabet.length) ? alphabet[i + 1] : ' ',
-                    data2.getStationCount(), data2.getTemperatureSum());
+                    data2.getStationCount(), data2.getTemperatureSum()));
         }
+        return output.toString();
     }
 
-    public boolean isFileInUse(String filePath) {
-        return filesInUse.contains(filePath);
-    }
-
-    public boolean markFileInUse(String filePath) {
-        return filesInUse.add(filePath);
-    }
-
-    public void markFileNotInUse(String filePath) {
-        filesInUse.remove(filePath);
-    }
-
-    public Set<String> getFilesInUse() {
-        return filesInUse;
+    /**
+     * Increases with every change to the map, so readers can tell whether anything changed.
+     */
+    public long getVersion() {
+        return version.get();
     }
 
     public Map<Character, StationData> getInMemoryMap() {
@@ -0,0 +1,65 @@
+package main.service;
+
+import java.util.List;
+
+/**
+ * Charges the matching lines one read keeps until they are written to its job's memory budget,
+ * in steps so the governor is not locked for every line. The {@link MatchWriter} that writes or
+ * discards the lines releases them; a read that throws before handing its lines over gives back
+ * what it charged itself.
+ */
+class MatchAccounting {
+    private static final long STEP = 1024 * 1024;
+
+    private final MemoryGovernor memoryGovernor;
+    private final String jobName;
+    private long unaccountedBytes;
+    private long accountedBytes;
+
+    MatchAccounting(MemoryGovernor memoryGovernor, String jobName) {
+        this.memoryGovernor = memoryGovernor;
+        this.jobName = jobName;
+    }
+
+    void add(String line) {
+        unaccountedBytes += bytes(line);
+        if (unaccountedBytes >= STEP) {
+            flush();
+        }
+    }
+
+    /**
+     * Charges the lines not charged yet, once the read has all of them.
+     */
+    void finish() {
+        flush();
+    }
+
+    /**
+     * Releases everything charged so far, for a read whose lines are lost.
+     */
+    void abandon() {
+        memoryGovernor.release(jobName, accountedBytes);
+        accountedBytes = 0;
+        unaccountedBytes = 0;
+    }
+
+    private void flush() {
+        memoryGovernor.account(jobName, unaccountedBytes);
+        accountedBytes += unaccountedBytes;
+        unaccountedBytes = 0;
+    }
+
+    static long bytes(List<String> lines) {
+        long bytes = 0;
+        for (String line : lines) {
+            bytes += bytes(line);
+        }
+        return bytes;
+    }
+
+    private static long bytes(String line) {
+        // String header, backing array and list slot
+        return 48 + line.length();
+    }
+}
@@ -0,0 +1,51 @@
+package main.service;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hands the matching lines of a read job to its sink. A sink that throws UncheckedIOException is
+ * closed for the rest of the job, and a null sink is closed from the start. The memory accounted
+ * for every result is released either way.
+ */
+class MatchWriter implements PendingReads.Results<List<String>> {
+    private final MemoryGovernor memoryGovernor;
+    private final String jobName;
+    private final Consumer<String> sink;
+    private boolean open;
+
+    MatchWriter(MemoryGovernor memoryGovernor, String jobName, Consumer<String> sink) {
+        this.memoryGovernor = memoryGovernor;
+        this.jobName = jobName;
+        this.sink = sink;
+        this.open = sink != null;
+    }
+
+    @Override
+    public void write(List<String> matches) {
+        try {
+            for (String line : matches) {
+                if (!open) {
+                    break;
+                }
+                try {
+                    sink.accept(line);
+                } catch (UncheckedIOException e) {
+                    System.err.println("Output of job " + jobName + " closed: " + e.getMessage());
+                    open = false;
+                }
+            }
+        } finally {
+            discard(matches);
+        }
+    }
+
+    /**
+     * Releases the memory accounted for the matches without writing them.
+     */
+    @Override
+    public void discard(List<String> matches) {
+        memoryGovernor.release(jobName, MatchAccounting.bytes(matches));
+    }
+}
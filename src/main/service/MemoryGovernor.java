@@ -0,0 +1,63 @@
+package main.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tracks the memory held by running tasks (read buffers, match lists, partial maps) against
+ * a global budget. New tasks wait at admission until enough of the budget is released.
+ */
+public class MemoryGovernor {
+    private static final long MB = 1024 * 1024;
+
+    private final long budgetBytes;
+    private final Map<String, Long> usageByOwner = new TreeMap<>();
+    private long usedBytes = 0;
+    private long peakBytes = 0;
+    private int waitingTasks = 0;
+
+    public MemoryGovernor(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Blocks until the reservation fits into the budget. A reservation larger than the whole
+     * budget is admitted once nothing else is reserved, so it can't wait forever.
+     */
+    public synchronized void acquire(String owner, long bytes) throws InterruptedException {
+        waitingTasks++;
+        try {
+            while (usedBytes > 0 && usedBytes + bytes > budgetBytes) {
+                wait();
+            }
+        } finally {
+            waitingTasks--;
+        }
+        add(owner, bytes);
+    }
+
+    // Accounts memory of an already admitted task; never blocks so running work can always finish
+    public synchronized void account(String owner, long bytes) {
+        add(owner, bytes);
+    }
+
+    public synchronized void release(String owner, long bytes) {
+        usedBytes -= bytes;
+        usageByOwner.computeIfPresent(owner, (k, used) -> used - bytes > 0 ? used - bytes : null);
+        notifyAll();
+    }
+
+    private void add(String owner, long bytes) {
+        usedBytes += bytes;
+        peakBytes = Math.max(peakBytes, usedBytes);
+        usageByOwner.merge(owner, bytes, Long::sum);
+    }
+
+    public synchronized void displayUsage() {
+        System.out.printf("Memory budget: %d MB used of %d MB (peak %d MB), %d task(s) waiting%n",
+                usedBytes / MB, budgetBytes / MB, peakBytes / MB, waitingTasks);
+        for (Map.Entry<String, Long> entry : usageByOwner.entrySet()) {
+            System.out.printf("  %s: %.1f MB%n", entry.getKey(), (double) entry.getValue() / MB);
+        }
+    }
+}
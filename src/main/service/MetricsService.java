@@ -0,0 +1,197 @@
+package main.service;
+
+import main.data.LatencyHistogram;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters, gauges and latency histograms for the hot paths. All names are registered up front,
+ * so lookups on the recording side never modify the maps.
+ */
+public class MetricsService {
+    // Counters
+    public static final String INGEST_BYTES = "ingest.bytes";
+    public static final String INGEST_ROWS = "ingest.rows";
+    public static final String INGEST_CHUNKS = "ingest.chunks";
+    public static final String SCAN_BYTES = "scan.bytes";
+    public static final String SCAN_ROWS = "scan.rows";
+    public static final String SCAN_MATCHES = "scan.matches";
+    public static final String JOBS_EXECUTED = "jobs.executed";
+    public static final String REPORTS_SKIPPED = "reports.skipped";
+
+    // Latencies
+    public static final String CHUNK_PARSE = "chunk.parse";
+    public static final String CHUNK_MERGE = "chunk.merge";
+    public static final String MAP_UPDATE = "map.update";
+    public static final String SCAN_FILE = "scan.file";
+    public static final String INTERACTIVE_QUEUE_WAIT = "job.interactive.wait";
+    public static final String INTERACTIVE_RUN = "job.interactive.run";
+    public static final String BULK_QUEUE_WAIT = "job.bulk.wait";
+    public static final String BULK_RUN = "job.bulk.run";
+    public static final String REPORT_LOCK_WAIT = "report.lock.wait";
+    public static final String REPORT_EXPORT = "report.export";
+    public static final String MEMORY_ADMISSION_WAIT = "memory.admission.wait";
+
+    // Gauges
+    public static final String INTERACTIVE_QUEUE_DEPTH = "job.interactive.depth";
+    public static final String BULK_QUEUE_DEPTH = "job.bulk.depth";
+    public static final String DISTINCT_STATIONS = "stations.distinct";
+    public static final String STATION_STORE_BYTES = "stations.store.bytes";
+
+    private static final String[] COUNTERS = {INGEST_BYTES, INGEST_ROWS, INGEST_CHUNKS,
+            SCAN_BYTES, SCAN_ROWS, SCAN_MATCHES, JOBS_EXECUTED, REPORTS_SKIPPED};
+    private static final String[] HISTOGRAMS = {CHUNK_PARSE, CHUNK_MERGE, MAP_UPDATE, SCAN_FILE,
+            INTERACTIVE_QUEUE_WAIT, INTERACTIVE_RUN, BULK_QUEUE_WAIT, BULK_RUN, REPORT_LOCK_WAIT, REPORT_EXPORT, MEMORY_ADMISSION_WAIT};
+    private static final String[] RATE_COUNTERS = {INGEST_BYTES, INGEST_ROWS, SCAN_BYTES, SCAN_ROWS};
+
+    private final Map<String, LongAdder> counters = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+    private final long startNanos = System.nanoTime();
+
+    private Map<String, Long> lastStatsCounters = new HashMap<>();
+    private long lastStatsNanos = startNanos;
+    private Map<String, Long> lastCsvCounters = new HashMap<>();
+    private long lastCsvNanos = startNanos;
+
+    public MetricsService() {
+        for (String name : COUNTERS) {
+            counters.put(name, new LongAdder());
+        }
+        for (String name : HISTOGRAMS) {
+            histograms.put(name, new LatencyHistogram());
+        }
+    }
+
+    public synchronized void registerGauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public void increment(String counter, long delta) {
+        counters.get(counter).add(delta);
+    }
+
+    public void record(String histogram, long nanos) {
+        histograms.get(histogram).record(nanos);
+    }
+
+    public void recordSince(String histogram, long startNanos) {
+        record(histogram, System.nanoTime() - startNanos);
+    }
+
+    public long getCounter(String counter) {
+        return counters.get(counter).sum();
+    }
+
+    public LatencyHistogram getHistogram(String histogram) {
+        return histograms.get(histogram);
+    }
+
+    public synchronized void displayStats() {
+        long now = System.nanoTime();
+        Map<String, Long> current = snapshotCounters();
+        double intervalSeconds = Math.max(1e-9, (now - lastStatsNanos) / 1e9);
+
+        System.out.printf("Uptime: %.0fs%n", (now - startNanos) / 1e9);
+        System.out.printf("Ingest: %.1f MB (%.1f MB/s), %d rows (%.0f rows/s), %d chunks%n",
+                current.get(INGEST_BYTES) / 1048576.0,
+                rate(current, lastStatsCounters, INGEST_BYTES, intervalSeconds) / 1048576.0,
+                current.get(INGEST_ROWS), rate(current, lastStatsCounters, INGEST_ROWS, intervalSeconds),
+                current.get(INGEST_CHUNKS));
+        System.out.printf("Scan: %.1f MB (%.1f MB/s), %d rows (%.0f rows/s), %d matches%n",
+                current.get(SCAN_BYTES) / 1048576.0,
+                rate(current, lastStatsCounters, SCAN_BYTES, intervalSeconds) / 1048576.0,
+                current.get(SCAN_ROWS), rate(current, lastStatsCounters, SCAN_ROWS, intervalSeconds),
+                current.get(SCAN_MATCHES));
+        System.out.println("Jobs executed: " + current.get(JOBS_EXECUTED));
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            System.out.println(gauge.getKey() + ": " + gauge.getValue().getAsLong());
+        }
+
+        System.out.printf("%-22s %8s %10s %10s %10s %10s%n", "latency (ms)", "count", "mean", "p50", "p99", "max");
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) continue;
+            System.out.printf("%-22s %8d %10.3f %10.3f %10.3f %10.3f%n", entry.getKey(), histogram.getCount(),
+                    histogram.getMeanMillis(), histogram.getPercentileMillis(50),
+                    histogram.getPercentileMillis(99), histogram.getMaxMillis());
+        }
+
+        lastStatsCounters = current;
+        lastStatsNanos = now;
+    }
+
+    /**
+     * Appends one row with totals, per-second rates since the previous row, gauges and
+     * latency percentiles. The header is written when the file is created.
+     */
+    public synchronized void writeCsvRow(String csvPath) {
+        long now = System.nanoTime();
+        Map<String, Long> current = snapshotCounters();
+        double intervalSeconds = Math.max(1e-9, (now - lastCsvNanos) / 1e9);
+
+        File csvFile = new File(csvPath);
+        boolean writeHeader = !csvFile.exists() || csvFile.length() == 0;
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter(csvFile, true))) {
+            if (writeHeader) {
+                List<String> header = new ArrayList<>();
+                header.add("time");
+                header.addAll(counters.keySet());
+                for (String name : RATE_COUNTERS) {
+                    header.add(name + ".per_sec");
+                }
+                header.addAll(gauges.keySet());
+                for (String name : histograms.keySet()) {
+                    header.add(name + ".count");
+                    header.add(name + ".p50_ms");
+                    header.add(name + ".p99_ms");
+                }
+                writer.println(String.join(",", header));
+            }
+
+            StringJoiner row = new StringJoiner(",");
+            row.add(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            for (String name : counters.keySet()) {
+                row.add(String.valueOf(current.get(name)));
+            }
+            for (String name : RATE_COUNTERS) {
+                row.add(String.format(Locale.ROOT, "%.1f", rate(current, lastCsvCounters, name, intervalSeconds)));
+            }
+            for (LongSupplier gauge : gauges.values()) {
+                row.add(String.valueOf(gauge.getAsLong()));
+            }
+            for (LatencyHistogram histogram : histograms.values()) {
+                row.add(String.valueOf(histogram.getCount()));
+                row.add(String.format(Locale.ROOT, "%.3f", histogram.getPercentileMillis(50)));
+                row.add(String.format(Locale.ROOT, "%.3f", histogram.getPercentileMillis(99)));
+            }
+            writer.println(row);
+        } catch (IOException e) {
+            System.err.println("Error writing metrics to " + csvPath + ": " + e.getMessage());
+        }
+
+        lastCsvCounters = current;
+        lastCsvNanos = now;
+    }
+
+    private Map<String, Long> snapshotCounters() {
+        Map<String, Long> snapshot = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+        return snapshot;
+    }
+
+    private static double rate(Map<String, Long> current, Map<String, Long> previous, String name, double seconds) {
+        return (current.get(name) - previous.getOrDefault(name, 0L)) / seconds;
+    }
+}
@@ -0,0 +1,105 @@
+package main.service;
+
+import main.io.Volume;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a job has in flight, queued per volume in submission order. Each volume holds at most
+ * the job's fair share of its pool; results are written as they are taken off the queues.
+ * Closing ends the job. A job that stops before draining cancels the rest: reads that have not
+ * started skip their work, running ones stop at the next record, and all their results are
+ * discarded.
+ */
+class PendingReads<T> implements AutoCloseable {
+    /**
+     * What a job does with the result of one read; both release the memory it accounted.
+     */
+    interface Results<T> {
+        void write(T result);
+
+        void discard(T result);
+    }
+
+    private final ReadShares shares;
+    private final Results<T> results;
+    private final Map<Volume, Deque<Future<T>>> byVolume = new LinkedHashMap<>();
+    private volatile boolean cancelled;
+    private boolean drained;
+
+    PendingReads(ReadShares shares, Results<T> results) {
+        this.shares = shares;
+        this.results = results;
+    }
+
+    /**
+     * Waits until the volume of the file has room for one more read of this job.
+     */
+    Volume awaitShare(Path file) throws InterruptedException, ExecutionException {
+        Volume volume = shares.volumeOf(file);
+        Deque<Future<T>> pending = byVolume.computeIfAbsent(volume, k -> new ArrayDeque<>());
+        while (pending.size() >= shares.shareOf(volume)) {
+            results.write(pending.poll().get());
+        }
+        return volume;
+    }
+
+    void add(Volume volume, Future<T> read) {
+        byVolume.computeIfAbsent(volume, k -> new ArrayDeque<>()).add(read);
+    }
+
+    void drain() throws InterruptedException, ExecutionException {
+        for (Deque<Future<T>> pending : byVolume.values()) {
+            while (!pending.isEmpty()) {
+                results.write(pending.poll().get());
+            }
+        }
+        drained = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (!drained) {
+                cancel();
+            }
+        } finally {
+            shares.end();
+        }
+    }
+
+    /**
+     * Stops the remaining reads and waits for them, so the memory they hold is given back and
+     * their read locks are released before the job ends.
+     */
+    private void cancel() {
+        cancelled = true;
+        boolean interrupted = false;
+        for (Deque<Future<T>> pending : byVolume.values()) {
+            while (!pending.isEmpty()) {
+                try {
+                    results.discard(pending.peek().get());
+                    pending.poll();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // The failed read released its own matches
+                    pending.poll();
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
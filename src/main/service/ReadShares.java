@@ -0,0 +1,42 @@
+package main.service;
+
+import main.io.Volume;
+import main.io.Volumes;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Divides the pool of every volume among the jobs reading measurement files: SCAN, LOOKUP and the
+ * sampled reads of SCAN --approx and ESTIMATE. Each job keeps at most the pool size divided by the
+ * number of running jobs in flight per volume, so concurrent jobs interleave their reads instead of
+ * the later one waiting for all reads of the earlier one.
+ */
+public class ReadShares {
+    private final Volumes volumes;
+    private final AtomicInteger activeJobs = new AtomicInteger();
+
+    public ReadShares(Volumes volumes) {
+        this.volumes = volumes;
+    }
+
+    /**
+     * Starts a job; it counts towards everybody's share until its reads are closed.
+     */
+    <T> PendingReads<T> begin(PendingReads.Results<T> results) {
+        activeJobs.incrementAndGet();
+        return new PendingReads<>(this, results);
+    }
+
+    void end() {
+        activeJobs.decrementAndGet();
+    }
+
+    Volume volumeOf(Path file) {
+        return volumes.forFile(file);
+    }
+
+    int shareOf(Volume volume) {
+        return Math.max(1, volume.getIoThreads() / Math.max(1, activeJobs.get()));
+    }
+}
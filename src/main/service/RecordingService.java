@@ -0,0 +1,68 @@
+package main.service;
+
+import main.events.*;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+
+/**
+ * Starts, dumps and stops a Java Flight Recorder recording at runtime. The recording uses the
+ * JDK "default" settings plus all of our own phase events.
+ */
+public class RecordingService {
+    private static final Class<?>[] METEO_EVENTS = {ProcessingRoundEvent.class, ChunkEvent.class,
+            ChunkMergeEvent.class, ScanFileEvent.class, ReportExportEvent.class};
+
+    private Recording recording;
+
+    public synchronized void startRecording() {
+        if (recording != null) {
+            System.out.println("Recording is already running");
+            return;
+        }
+
+        try {
+            Recording newRecording = new Recording(Configuration.getConfiguration("default"));
+            newRecording.setName("meteo");
+            for (Class<?> eventClass : METEO_EVENTS) {
+                newRecording.enable(eventClass.getName());
+            }
+            newRecording.start();
+            recording = newRecording;
+            System.out.println("Recording started");
+        } catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+            System.err.println("Error starting recording: " + e.getMessage());
+        }
+    }
+
+    public synchronized void dumpRecording(String outputFile) {
+        if (recording == null) {
+            System.out.println("No recording is running");
+            return;
+        }
+
+        try {
+            Path output = Paths.get(outputFile);
+            recording.dump(output);
+            System.out.println("Recording dumped to " + output.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Error dumping recording: " + e.getMessage());
+        }
+    }
+
+    public synchronized void stopRecording() {
+        if (recording == null) {
+            System.out.println("No recording is running");
+            return;
+        }
+
+        recording.close();
+        recording = null;
+        System.out.println("Recording stopped");
+    }
+}
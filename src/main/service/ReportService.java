@@ -1,27 +1,50 @@
 package main.service;
 
 import main.data.StationData;
+import main.events.ReportExportEvent;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Writes the map to meteo_log.csv for EXPORTMAP and the periodic report. Both go through the
+ * same lock, so the files are never written by two exports at once. The periodic report skips
+ * map versions it has already written and appends what changed since the previous report to
+ * meteo_log_deltas.csv.
+ */
 public class ReportService {
+    private static final String LOG_FILE = "meteo_log.csv";
+    private static final String DELTA_FILE = "meteo_log_deltas.csv";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     private final MapService mapService;
+    private final MetricsService metrics;
     private final Object exportLock = new Object();
 
-    public ReportService(MapService mapService) {
+    // Guarded by exportLock
+    private long reportedVersion = -1;
+    private Map<Character, StationData> reportedSnapshot = new HashMap<>();
+
+    public ReportService(MapService mapService, MetricsService metrics) {
         this.mapService = mapService;
+        this.metrics = metrics;
     }
 
     public void generatePeriodicReport() {
         try {
             synchronized (exportLock) {
+                if (mapService.getVersion() == reportedVersion) {
+                    metrics.increment(MetricsService.REPORTS_SKIPPED, 1);
+                    return;
+                }
                 System.out.println("Generating periodic report...");
-                exportMapToFile();
+                exportMapToFile("periodic report", true);
             }
         } catch (Exception e) {
             System.err.println("Error generating periodic report: " + e.getMessage());
@@ -29,31 +52,92 @@ public class ReportService {
     }
 
     public void exportMapToFile() {
+        exportMapToFile("EXPORTMAP", false);
+    }
+
+    private void exportMapToFile(String jobName, boolean appendDeltas) {
+        long waitStart = System.nanoTime();
         synchronized (exportLock) {
+            long exportStart = System.nanoTime();
+            metrics.record(MetricsService.REPORT_LOCK_WAIT, exportStart - waitStart);
+            ReportExportEvent exportEvent = new ReportExportEvent();
+            exportEvent.begin();
             try {
-                File logFile = new File("meteo_log.csv");
+                // Read the version first; a change racing with the snapshot just triggers one more report
+                long version = mapService.getVersion();
+                Map<Character, StationData> mapSnapshot = copyOf(mapService.getInMemoryMap());
+
+                if (appendDeltas) {
+                    appendDeltas(mapSnapshot);
+                    reportedVersion = version;
+                    reportedSnapshot = mapSnapshot;
+                }
+
+                File logFile = new File(LOG_FILE);
                 try (PrintWriter writer = new PrintWriter(new FileWriter(logFile))) {
                     writer.println("Letter,Station count,Sum");
 
-                    Map<Character, StationData> inMemoryMap = mapService.getInMemoryMap();
-                    if (inMemoryMap.isEmpty()) {
+                    if (mapSnapshot.isEmpty()) {
                         System.out.println("Map is not yet available for export");
                         return;
                     }
 
-                    // Take a snapshot of the map to prevent concurrent modification issues
-                    Map<Character, StationData> mapSnapshot = new HashMap<>(inMemoryMap);
-
                     for (char c = 'a'; c <= 'z'; c++) {
                         StationData data = mapSnapshot.getOrDefault(c, new StationData());
                         writer.printf("%c,%d,%.1f%n", c, data.getStationCount(), data.getTemperatureSum());
+                        exportEvent.rows++;
                     }
 
-                    System.out.println("Map exported to meteo_log.csv");
+                    System.out.println("Map exported to " + LOG_FILE);
+                    long missing = mapService.getReadingsWithoutStations();
+                    if (missing > 0 && !appendDeltas) {
+                        System.out.println("Warning: " + missing + " readings have no per-station data");
+                    }
                 }
             } catch (IOException e) {
                 System.err.println("Error exporting map: " + e.getMessage());
+            } finally {
+                metrics.recordSince(MetricsService.REPORT_EXPORT, exportStart);
+                exportEvent.jobName = jobName;
+                exportEvent.file = LOG_FILE;
+                exportEvent.commit();
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Appends one row per letter whose totals changed since the last periodic report.
+     */
+    private void appendDeltas(Map<Character, StationData> mapSnapshot) throws IOException {
+        File deltaFile = new File(DELTA_FILE);
+        boolean writeHeader = !deltaFile.exists() || deltaFile.length() == 0;
+        String timestamp = LocalDateTime.now().format(TIMESTAMP_FORMAT);
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter(deltaFile, true))) {
+            if (writeHeader) {
+                writer.println("Time,Letter,Station count delta,Sum delta");
+            }
+
+            for (char c = 'a'; c <= 'z'; c++) {
+                StationData current = mapSnapshot.getOrDefault(c, new StationData());
+                StationData previous = reportedSnapshot.getOrDefault(c, new StationData());
+                int countDelta = current.getStationCount() - previous.getStationCount();
+                double sumDelta = current.getTemperatureSum() - previous.getTemperatureSum();
+                if (countDelta != 0 || sumDelta != 0) {
+                    writer.printf("%s,%c,%d,%.1f%n", timestamp, c, countDelta, sumDelta);
+                }
+            }
+        }
+    }
+
+    private static Map<Character, StationData> copyOf(Map<Character, StationData> map) {
+        // Values are updated in place by ingest, so copy them rather than the references
+        Map<Character, StationData> copy = new HashMap<>();
+        for (Map.Entry<Character, StationData> entry : map.entrySet()) {
+            StationData data = new StationData();
+            data.update(entry.getValue().getStationCount(), entry.getValue().getTemperatureSum());
+            copy.put(entry.getKey(), data);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,274 @@
+package main.service;
+
+import main.config.AppConfig;
+import main.data.ChunkStations;
+import main.data.Estimate;
+import main.io.ByteScanner;
+import main.io.ChunkParser;
+import main.io.FileChunk;
+import main.io.RecordCursor;
+import main.io.SamplePlanner;
+import main.io.SampleStratum;
+import main.io.Volume;
+import main.io.Volumes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Answers SCAN --approx and ESTIMATE from a stratified sample of every file instead of a full
+ * pass. Each stratum is extrapolated from the mean of its sampled units and the variances of
+ * the strata add up, which gives the confidence intervals.
+ */
+public class SampleEstimator {
+    private static final int SAMPLE_READ_BUFFER_SIZE = 64 * 1024;
+
+    private final AppConfig config;
+    private final Volumes volumes;
+    private final FileLockManager fileLocks;
+    private final ReadShares readShares;
+    private final MemoryGovernor memoryGovernor;
+    private final ChunkParser chunkParser;
+    private final SamplePlanner samplePlanner;
+    private final long readerBufferBytes;
+
+    public SampleEstimator(AppConfig config, Volumes volumes, FileLockManager fileLocks, ReadShares readShares,
+                           MemoryGovernor memoryGovernor, ByteScanner byteScanner) {
+        this.config = config;
+        this.volumes = volumes;
+        this.fileLocks = fileLocks;
+        this.readShares = readShares;
+        this.memoryGovernor = memoryGovernor;
+        // Units run on the pools of every volume at once
+        this.chunkParser = new ChunkParser(config, byteScanner, SAMPLE_READ_BUFFER_SIZE,
+                volumes.getTotalIoThreads());
+        this.samplePlanner = new SamplePlanner(config);
+        this.readerBufferBytes = (long) SAMPLE_READ_BUFFER_SIZE * config.getReadAheadDepth();
+    }
+
+    private static class UnitResult {
+        final Map<Character, double[]> letters = new HashMap<>(); // count, sum
+        final List<String> lines = new ArrayList<>();
+        long rows;
+    }
+
+    private static class StratumResult {
+        final int unitCount;
+        final List<Future<UnitResult>> units = new ArrayList<>();
+
+        StratumResult(int unitCount) {
+            this.unitCount = unitCount;
+        }
+    }
+
+    /**
+     * Writes the sampled lines of a unit and drops them; the per-letter values are kept for the
+     * extrapolation.
+     */
+    private static class SampleWriter implements PendingReads.Results<UnitResult> {
+        private final MatchWriter matchWriter;
+
+        SampleWriter(MatchWriter matchWriter) {
+            this.matchWriter = matchWriter;
+        }
+
+        @Override
+        public void write(UnitResult unit) {
+            matchWriter.write(unit.lines);
+            unit.lines.clear();
+        }
+
+        @Override
+        public void discard(UnitResult unit) {
+            matchWriter.discard(unit.lines);
+            unit.lines.clear();
+        }
+    }
+
+    /**
+     * Estimates the rows with a temperature in {@code [min, max]}, for one letter or for all
+     * letters when {@code targetLetter} is 0. The sampled matching lines go to {@code sampleSink}
+     * if it is not null. Units take their share of the volumes like a full scan does, and their
+     * sampled lines are charged to the job until written.
+     */
+    public Estimate estimate(double min, double max, char targetLetter, double fraction, String jobName,
+                             Consumer<String> sampleSink) throws IOException, InterruptedException, ExecutionException {
+        long startNanos = System.nanoTime();
+        Random random = new Random();
+        List<StratumResult> strata = new ArrayList<>();
+        long totalBytes = 0;
+        long sampledBytes = 0;
+
+        try (PendingReads<UnitResult> pending = readShares.begin(
+                new SampleWriter(new MatchWriter(memoryGovernor, jobName, sampleSink)))) {
+            for (Path file : volumes.listFiles()) {
+                long stamp = fileLocks.lockForRead(file);
+                // The read lock is released by whoever finishes last: this thread or a unit task
+                AtomicInteger holders = new AtomicInteger(1);
+                try {
+                    List<SampleStratum> plan = samplePlanner.plan(file, fraction, random,
+                            volumes.forFile(file).getIoThreads());
+                    totalBytes += Files.size(file);
+
+                    for (SampleStratum stratum : plan) {
+                        StratumResult stratumResult = new StratumResult(stratum.getUnitCount());
+                        strata.add(stratumResult);
+                        for (FileChunk unit : stratum.getSampledUnits()) {
+                            Volume volume = pending.awaitShare(file);
+
+                            sampledBytes += unit.getLength();
+                            memoryGovernor.acquire(jobName, readerBufferBytes);
+                            holders.incrementAndGet();
+                            Future<UnitResult> future = volume.getIoPool().submit(() -> {
+                                try {
+                                    if (pending.isCancelled()) {
+                                        return new UnitResult();
+                                    }
+                                    return readUnit(unit, min, max, targetLetter, jobName, sampleSink != null, pending);
+                                } finally {
+                                    memoryGovernor.release(jobName, readerBufferBytes);
+                                    releaseReadLock(file, stamp, holders);
+                                }
+                            });
+                            stratumResult.units.add(future);
+                            pending.add(volume, future);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error reading " + file.getFileName() + ", left out of the estimate");
+                } finally {
+                    releaseReadLock(file, stamp, holders);
+                }
+            }
+
+            // Writes the remaining sampled lines
+            pending.drain();
+        }
+
+        // Collect the per-unit values of every letter, stratum by stratum
+        long rowsRead = 0;
+        List<List<UnitResult>> results = new ArrayList<>();
+        Set<Character> letters = new TreeSet<>();
+        for (StratumResult stratum : strata) {
+            List<UnitResult> unitResults = new ArrayList<>();
+            for (Future<UnitResult> future : stratum.units) {
+                UnitResult unitResult = future.get();
+                rowsRead += unitResult.rows;
+                letters.addAll(unitResult.letters.keySet());
+                unitResults.add(unitResult);
+            }
+            results.add(unitResults);
+        }
+
+        Estimate estimate = new Estimate(sampledBytes, totalBytes, rowsRead, System.nanoTime() - startNanos);
+        for (char letter : letters) {
+            double[] count = extrapolate(strata, results, letter, 0);
+            double[] sum = extrapolate(strata, results, letter, 1);
+            estimate.addLetter(letter, count[0], count[1], sum[0], sum[1]);
+        }
+        return estimate;
+    }
+
+    private void releaseReadLock(Path file, long stamp, AtomicInteger holders) {
+        if (holders.decrementAndGet() == 0) {
+            fileLocks.unlockRead(file, stamp);
+        }
+    }
+
+    /**
+     * Stratified estimate of a total and its variance. Within a stratum of N units with n
+     * sampled, the total is N times the sample mean and its variance N^2 (1 - n/N) s^2 / n.
+     */
+    private static double[] extrapolate(List<StratumResult> strata, List<List<UnitResult>> results,
+                                        char letter, int valueIndex) {
+        double total = 0;
+        double variance = 0;
+        for (int i = 0; i < strata.size(); i++) {
+            List<UnitResult> units = results.get(i);
+            int n = units.size();
+            double unitCount = strata.get(i).unitCount;
+
+            double mean = 0;
+            for (UnitResult unit : units) {
+                mean += value(unit, letter, valueIndex);
+            }
+            mean /= n;
+
+            double squares = 0;
+            for (UnitResult unit : units) {
+                double deviation = value(unit, letter, valueIndex) - mean;
+                squares += deviation * deviation;
+            }
+
+            total += unitCount * mean;
+            if (n > 1) {
+                variance += unitCount * unitCount * (1 - n / unitCount) * (squares / (n - 1)) / n;
+            }
+        }
+        return new double[]{total, variance};
+    }
+
+    private static double value(UnitResult unit, char letter, int valueIndex) {
+        double[] values = unit.letters.get(letter);
+        return values != null ? values[valueIndex] : 0;
+    }
+
+    private UnitResult readUnit(FileChunk unit, double min, double max, char targetLetter, String jobName,
+                                boolean keepLines, PendingReads<UnitResult> pending) {
+        UnitResult result = new UnitResult();
+        MatchAccounting accounting = new MatchAccounting(memoryGovernor, jobName);
+        boolean completed = false;
+
+        try (RecordCursor records = chunkParser.openCursor(unit.getFile(), unit.getStartPosition(),
+                unit.getEndPosition())) {
+            while (records.next() && !pending.isCancelled()) {
+                byte[] line = records.getLine();
+
+                // Reject other letters on the raw first byte; only plain ASCII can be decided this way
+                byte first = line[records.getNameStart()];
+                if (targetLetter != 0 && first >= 0 && Character.toLowerCase((char) first) != targetLetter) {
+                    continue;
+                }
+
+                char letter = ChunkStations.letterOf(line, records.getNameStart(), records.getNameEnd());
+                if (letter == 0 || targetLetter != 0 && letter != targetLetter) {
+                    continue;
+                }
+
+                int tenths = records.getTemperatureTenths();
+                if (tenths == RecordCursor.INVALID_TEMPERATURE) {
+                    continue;
+                }
+
+                double temperature = tenths / 10.0;
+                if (temperature >= min && temperature <= max) {
+                    double[] values = result.letters.computeIfAbsent(letter, k -> new double[2]);
+                    values[0]++;
+                    values[1] += temperature;
+                    if (keepLines) {
+                        String sampledLine = new String(line, 0, records.getLineLength(), StandardCharsets.UTF_8);
+                        result.lines.add(sampledLine);
+                        accounting.add(sampledLine);
+                    }
+                }
+            }
+            result.rows = records.getLinesRead();
+            completed = true;
+        } catch (IOException e) {
+            System.err.println("Error reading sample of " + unit.getFile().getFileName() + ": " + e.getMessage());
+            completed = true;
+        } finally {
+            // A unit that throws loses its lines, so nobody else can release what it accounted
+            if (!completed) {
+                accounting.abandon();
+            }
+        }
+        accounting.finish();
+        return result;
+    }
+}
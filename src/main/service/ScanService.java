@@ -1,108 +1,431 @@
 package main.service;
 
 import main.config.AppConfig;
-import main.utils.FileUtils;
+import main.data.ChunkStations;
+import main.data.Estimate;
+import main.events.ScanFileEvent;
+import main.io.BufferPool;
+import main.io.ByteScanner;
+import main.io.FileChunk;
+import main.io.RecordCursor;
+import main.io.StationIndex;
+import main.io.Volume;
+import main.io.Volumes;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 public class ScanService {
     private final AppConfig config;
-    private final ExecutorService executorService;
-    private final Set<String> filesInUse;
+    private final Volumes volumes;
+    private final FileLockManager fileLocks;
+    private final SampleEstimator sampleEstimator;
+    private final ReadShares readShares;
+    private final MemoryGovernor memoryGovernor;
+    private final ByteScanner byteScanner;
+    private final MetricsService metrics;
+    private final BufferPool bufferPool;
+    private final long readerBufferBytes;
+    // Stands in for a named job that waits in its lane
+    private static final Future<?> QUEUED = new FutureTask<>(() -> { }, null);
+
     private final Map<String, Future<?>> namedJobs = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> bytesReadByJob = new ConcurrentHashMap<>();
 
-    public ScanService(AppConfig config, ExecutorService executorService, Set<String> filesInUse) {
+    public ScanService(AppConfig config, Volumes volumes, FileLockManager fileLocks, SampleEstimator sampleEstimator,
+                       ReadShares readShares, MemoryGovernor memoryGovernor, ByteScanner byteScanner,
+                       MetricsService metrics) {
         this.config = config;
-        this.executorService = executorService;
-        this.filesInUse = filesInUse;
+        this.volumes = volumes;
+        this.fileLocks = fileLocks;
+        this.sampleEstimator = sampleEstimator;
+        this.readShares = readShares;
+        this.memoryGovernor = memoryGovernor;
+        this.byteScanner = byteScanner;
+        this.metrics = metrics;
+        this.readerBufferBytes = (long) config.getReadBufferSize() * config.getReadAheadDepth();
+        this.bufferPool = new BufferPool(config.getReadBufferSize(),
+                volumes.getTotalIoThreads() * config.getReadAheadDepth());
     }
 
-    public void executeScan(double min, double max, char targetLetter, String outputFile, String jobName) {
-        Future<?> job = executorService.submit(() -> {
+    /**
+     * Runs a scan on the calling job worker. It is registered first, so STATUS reports it as running.
+     */
+    public void executeScan(double min, double max, char targetLetter, String outputFile, String jobName,
+                            double approxFraction) {
+        FutureTask<?> job = new FutureTask<>(() -> {
             try {
-                processAllFiles(min, max, targetLetter, outputFile);
+                if (approxFraction > 0) {
+                    processSample(min, max, targetLetter, outputFile, jobName, approxFraction);
+                } else {
+                    processAllFiles(min, max, targetLetter, outputFile, jobName);
+                }
                 System.out.println("Job " + jobName + " completed");
             } catch (Exception e) {
                 System.err.println("Error in job " + jobName + ": " + e.getMessage());
             }
-        });
+        }, null);
         namedJobs.put(jobName, job);
-        System.out.println("Job " + jobName + " submitted");
+        System.out.println("Job " + jobName + " started");
+        job.run();
     }
 
-    private void processAllFiles(double min, double max, char targetLetter, String outputFile) {
+    private void processAllFiles(double min, double max, char targetLetter, String outputFile, String jobName) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(outputFile))) {
-            List<Future<List<String>>> futures = new ArrayList<>();
+            scanAllFiles(min, max, targetLetter, jobName, writer::println);
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            System.err.println("Scan failed: " + e.getMessage());
+        }
+    }
 
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(config.getDirectoryPath()),
-                    path -> FileUtils.isValidMeteoFile(path))) {
-                for (Path file : stream) {
-                    futures.add(executorService.submit(() -> processSingleFile(file, min, max, targetLetter)));
-                }
+    /**
+     * Writes the matching lines of a sample of every file and prints the extrapolated totals.
+     */
+    private void processSample(double min, double max, char targetLetter, String outputFile, String jobName,
+                               double fraction) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(outputFile))) {
+            Estimate estimate = sampleEstimator.estimate(min, max, targetLetter, fraction, jobName, writer::println);
+            System.out.print("Job " + jobName + " (approximate): " + estimate.format());
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            System.err.println("Scan failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a scan on the calling thread and hands every match to the sink instead of a file.
+     * A sink that throws UncheckedIOException (e.g. a closed connection) stops the output,
+     * the remaining file tasks are still drained so their memory is released. An approximate
+     * scan sends the sampled matches followed by the estimate, each line prefixed with "# ".
+     */
+    public void streamScan(double min, double max, char targetLetter, double approxFraction, String jobName,
+                           Consumer<String> sink) throws IOException, InterruptedException, ExecutionException {
+        if (approxFraction > 0) {
+            Estimate estimate = sampleEstimator.estimate(min, max, targetLetter, approxFraction, jobName, sink);
+            for (String line : estimate.format().split("\\R")) {
+                sink.accept("# " + line);
             }
+            return;
+        }
+        scanAllFiles(min, max, targetLetter, jobName, sink);
+    }
+
+    public void registerJob(String jobName, Future<?> job) {
+        namedJobs.put(jobName, job);
+    }
+
+    /**
+     * Registers a SCAN or LOOKUP as queued when it is submitted; it is replaced once it starts.
+     */
+    public void markQueued(String jobName) {
+        namedJobs.put(jobName, QUEUED);
+    }
+
+    /**
+     * Forgets a queued job that the job processor rejected.
+     */
+    public void unmarkQueued(String jobName) {
+        namedJobs.remove(jobName, QUEUED);
+    }
+
+    /**
+     * Scans every file of every volume, keeping at most a fair share of each volume's pool busy
+     * (see {@link ReadShares}). A slow volume only holds up the files that live on it.
+     */
+    private void scanAllFiles(double min, double max, char targetLetter, String jobName, Consumer<String> sink)
+            throws InterruptedException, ExecutionException {
+        List<Path> ingestedFiles = new ArrayList<>();
 
-            // Collect results
-            for (Future<List<String>> future : futures) {
-                List<String> matches = future.get();
-                for (String line : matches) {
-                    writer.println(line);
+        try (PendingReads<List<String>> pending = readShares.begin(new MatchWriter(memoryGovernor, jobName, sink))) {
+            for (Path file : volumes.listFiles()) {
+                // Wait for a share before locking, so a failed read never leaves a lock behind
+                Volume volume = pending.awaitShare(file);
+                long stamp = fileLocks.tryLockForRead(file);
+                if (stamp == 0) {
+                    // Being ingested; scan it once everything else is under way
+                    ingestedFiles.add(file);
+                    continue;
                 }
+                pending.add(volume, submitFile(file, stamp, min, max, targetLetter, jobName, pending));
             }
-        } catch (IOException | InterruptedException | ExecutionException e) {
-            System.err.println("Scan failed: " + e.getMessage());
+
+            for (Path file : ingestedFiles) {
+                Volume volume = pending.awaitShare(file);
+                pending.add(volume, submitFile(file, fileLocks.lockForRead(file), min, max, targetLetter, jobName,
+                        pending));
+            }
+
+            // Collect the remaining results
+            pending.drain();
         }
     }
 
-    private List<String> processSingleFile(Path file, double min, double max, char targetLetter) {
-        List<String> matches = new ArrayList<>();
-        boolean isCsv = file.toString().endsWith(".csv");
+    /**
+     * Runs a LOOKUP on the calling job worker: writes every reading of one station, reading only
+     * the chunks whose Bloom filter might contain it. Files without a current index are read whole.
+     */
+    public void executeLookup(String station, String outputFile, String jobName) {
+        FutureTask<?> job = new FutureTask<>(() -> {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(outputFile))) {
+                lookupStation(station, jobName, writer::println);
+                System.out.println("Job " + jobName + " completed");
+            } catch (IOException | ExecutionException e) {
+                System.err.println("Error in job " + jobName + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.err.println("Job " + jobName + " interrupted");
+            }
+        }, null);
+        namedJobs.put(jobName, job);
+        System.out.println("Job " + jobName + " started");
+        job.run();
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()), 8 * 1024 * 1024)) {
-            String line;
-            boolean isHeader = isCsv;
+    private void lookupStation(String station, String jobName, Consumer<String> sink)
+            throws IOException, InterruptedException, ExecutionException {
+        byte[] name = station.getBytes(StandardCharsets.UTF_8);
+        List<Path> ingestedFiles = new ArrayList<>();
+        long[] bytes = new long[2]; // read, total
 
-            while ((line = reader.readLine()) != null) {
-                if (isHeader) {
-                    isHeader = false;
-                    continue; // Skip CSV header
+        try (PendingReads<List<String>> pending = readShares.begin(new MatchWriter(memoryGovernor, jobName, sink))) {
+            for (Path file : volumes.listFiles()) {
+                long stamp = fileLocks.tryLockForRead(file);
+                if (stamp == 0) {
+                    // Being ingested; its index is rewritten before the lock is released
+                    ingestedFiles.add(file);
+                    continue;
                 }
+                submitCandidates(file, stamp, station, name, jobName, pending, bytes);
+            }
 
-                int semicolonPos = line.indexOf(';');
-                if (semicolonPos < 1) continue;
+            for (Path file : ingestedFiles) {
+                submitCandidates(file, fileLocks.lockForRead(file), station, name, jobName, pending, bytes);
+            }
 
-                String station = line.substring(0, semicolonPos).trim();
-                if (station.isEmpty()) continue;
+            pending.drain();
+        }
 
-                char firstChar = Character.toLowerCase(station.charAt(0));
-                if (firstChar != targetLetter) continue;
+        System.out.printf("Job %s read %.1f of %.1f MB%n", jobName, bytes[0] / 1048576.0, bytes[1] / 1048576.0);
+    }
+
+    /**
+     * Submits one read per candidate chunk of the file. The file's read lock is released by
+     * whichever read finishes last.
+     */
+    private void submitCandidates(Path file, long stamp, String station, byte[] name, String jobName,
+                                  PendingReads<List<String>> pending, long[] bytes)
+            throws InterruptedException, ExecutionException {
+        AtomicInteger holders = new AtomicInteger(1);
+        try {
+            long fileSize = Files.size(file);
+            StationIndex stationIndex = StationIndex.load(file);
+            List<FileChunk> candidates = stationIndex != null
+                    ? stationIndex.candidateChunks(station)
+                    : List.of(new FileChunk(file, 0, fileSize));
+
+            bytes[1] += fileSize;
+            for (FileChunk chunk : candidates) {
+                Volume volume = pending.awaitShare(file);
 
-                try {
-                    double temp = Double.parseDouble(line.substring(semicolonPos + 1).trim());
-                    if (temp >= min && temp <= max) {
-                        matches.add(line);
+                // Admission control: wait until the chunk's reader buffer fits into the memory budget
+                long waitStart = System.nanoTime();
+                memoryGovernor.acquire(jobName, readerBufferBytes);
+                metrics.recordSince(MetricsService.MEMORY_ADMISSION_WAIT, waitStart);
+
+                bytes[0] += chunk.getLength();
+                holders.incrementAndGet();
+                pending.add(volume, volume.getIoPool().submit(() -> {
+                    try {
+                        return pending.isCancelled() ? List.<String>of() : lookupChunk(chunk, name, jobName, pending);
+                    } finally {
+                        memoryGovernor.release(jobName, readerBufferBytes);
+                        releaseReadLock(file, stamp, holders);
                     }
-                } catch (NumberFormatException ignored) {}
+                }));
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading " + file.getFileName());
+        } finally {
+            releaseReadLock(file, stamp, holders);
+        }
+    }
+
+    private void releaseReadLock(Path file, long stamp, AtomicInteger holders) {
+        if (holders.decrementAndGet() == 0) {
+            fileLocks.unlockRead(file, stamp);
+        }
+    }
+
+    private List<String> lookupChunk(FileChunk chunk, byte[] name, String jobName,
+                                     PendingReads<List<String>> pending) {
+        List<String> matches = new ArrayList<>();
+        MatchAccounting accounting = new MatchAccounting(memoryGovernor, jobName);
+        long rows = 0;
+        boolean completed = false;
+
+        try (RecordCursor records = new RecordCursor(chunk.getFile(), chunk.getStartPosition(),
+                chunk.getEndPosition(), bufferPool, config.getReadAheadDepth(), byteScanner)) {
+            while (records.next() && !pending.isCancelled()) {
+                byte[] bytes = records.getLine();
+                int nameStart = records.getNameStart();
+                int nameEnd = records.getNameEnd();
+                if (!Arrays.equals(bytes, nameStart, nameEnd, name, 0, name.length)) continue;
+                if (records.getTemperatureTenths() == RecordCursor.INVALID_TEMPERATURE) continue;
+
+                String line = new String(bytes, 0, records.getLineLength(), StandardCharsets.UTF_8);
+                matches.add(line);
+
+                // Matches stay in memory until written, so account them in steps
+                accounting.add(line);
+            }
+
+            rows = records.getLinesRead();
+            completed = true;
+        } catch (IOException e) {
+            System.err.println("Error reading " + chunk.getFile().getFileName());
+            completed = true;
+        } finally {
+            // A read that throws loses its matches, so nobody else can release what it accounted
+            if (!completed) {
+                accounting.abandon();
+            }
+        }
+
+        metrics.increment(MetricsService.SCAN_BYTES, chunk.getLength());
+        bytesReadByJob.computeIfAbsent(jobName, k -> new LongAdder()).add(chunk.getLength());
+        metrics.increment(MetricsService.SCAN_ROWS, rows);
+        metrics.increment(MetricsService.SCAN_MATCHES, matches.size());
+        accounting.finish();
+        return matches;
+    }
+
+    /**
+     * Submits the scan of one file, which holds the file's read lock until it finishes.
+     */
+    private Future<List<String>> submitFile(Path file, long stamp, double min, double max, char targetLetter,
+                                            String jobName, PendingReads<List<String>> pending)
+            throws InterruptedException {
+        try {
+            // Admission control: wait until the file's reader buffer fits into the memory budget
+            long waitStart = System.nanoTime();
+            memoryGovernor.acquire(jobName, readerBufferBytes);
+            metrics.recordSince(MetricsService.MEMORY_ADMISSION_WAIT, waitStart);
+        } catch (InterruptedException e) {
+            fileLocks.unlockRead(file, stamp);
+            throw e;
+        }
+
+        return volumes.poolFor(file).submit(() -> {
+            try {
+                return pending.isCancelled()
+                        ? List.<String>of()
+                        : processSingleFile(file, min, max, targetLetter, jobName, pending);
+            } finally {
+                memoryGovernor.release(jobName, readerBufferBytes);
+                fileLocks.unlockRead(file, stamp);
             }
+        });
+    }
+
+    private List<String> processSingleFile(Path file, double min, double max, char targetLetter, String jobName,
+                                           PendingReads<List<String>> pending) {
+        List<String> matches = new ArrayList<>();
+        MatchAccounting accounting = new MatchAccounting(memoryGovernor, jobName);
+        boolean completed = false;
+        long rows = 0;
+        long bytesRead = 0;
+        long scanStart = System.nanoTime();
+        ScanFileEvent scanEvent = new ScanFileEvent();
+        scanEvent.begin();
+
+        try (RecordCursor records = new RecordCursor(file, 0, Long.MAX_VALUE, bufferPool,
+                config.getReadAheadDepth(), byteScanner)) {
+            while (records.next() && !pending.isCancelled()) {
+                byte[] bytes = records.getLine();
+                int nameStart = records.getNameStart();
+
+                // Reject other letters on the raw first byte; only plain ASCII can be decided this way
+                byte first = bytes[nameStart];
+                if (first >= 0 && Character.toLowerCase((char) first) != targetLetter) continue;
+
+                if (ChunkStations.letterOf(bytes, nameStart, records.getNameEnd()) != targetLetter) continue;
+
+                int tenths = records.getTemperatureTenths();
+                if (tenths == RecordCursor.INVALID_TEMPERATURE) continue;
+
+                double temp = tenths / 10.0;
+                if (temp >= min && temp <= max) {
+                    // Only matching lines are decoded
+                    String line = new String(bytes, 0, records.getLineLength(), StandardCharsets.UTF_8);
+                    matches.add(line);
+
+                    // Matches stay in memory until written, so account them in steps
+                    accounting.add(line);
+                }
+            }
+
+            rows = records.getLinesRead();
+            bytesRead = records.getPosition();
+            completed = true;
         } catch (IOException e) {
             System.err.println("Error reading " + file.getFileName());
+            completed = true;
+        } finally {
+            // A read that throws loses its matches, so nobody else can release what it accounted
+            if (!completed) {
+                accounting.abandon();
+            }
         }
 
+        metrics.recordSince(MetricsService.SCAN_FILE, scanStart);
+        metrics.increment(MetricsService.SCAN_BYTES, bytesRead);
+        bytesReadByJob.computeIfAbsent(jobName, k -> new LongAdder()).add(bytesRead);
+        metrics.increment(MetricsService.SCAN_ROWS, rows);
+        metrics.increment(MetricsService.SCAN_MATCHES, matches.size());
+        accounting.finish();
+
+        scanEvent.end();
+        if (scanEvent.shouldCommit()) {
+            scanEvent.jobName = jobName;
+            scanEvent.file = file.toString();
+            scanEvent.startOffset = 0;
+            scanEvent.endOffset = bytesRead;
+            scanEvent.rows = rows;
+            scanEvent.matches = matches.size();
+            scanEvent.commit();
+        }
         return matches;
     }
 
+    /**
+     * Bytes a SCAN or LOOKUP of this name has read so far; sampled scans are not counted.
+     */
+    public long getBytesRead(String jobName) {
+        LongAdder bytesRead = bytesReadByJob.get(jobName);
+        return bytesRead == null ? 0 : bytesRead.sum();
+    }
+
     public void checkJobStatus(String jobName) {
+        System.out.println(getJobStatus(jobName));
+    }
+
+    public String getJobStatus(String jobName) {
         Future<?> job = namedJobs.get(jobName);
         if (job == null) {
-            System.out.println(jobName + " is unknown");
-        } else if (job.isDone()) {
-            System.out.println(jobName + " is completed");
+            return jobName + " is unknown";
+        } else if (job == QUEUED) {
+            return jobName + " is queued";
         } else if (job.isCancelled()) {
-            System.out.println(jobName + " is cancelled");
+            return jobName + " is cancelled";
+        } else if (job.isDone()) {
+            return jobName + " is completed";
         } else {
-            System.out.println(jobName + " is running");
+            return jobName + " is running";
         }
     }
 
@@ -5,7 +5,22 @@ import java.nio.file.Path;
 public class FileUtils {
 
     public static boolean isValidMeteoFile(Path path) {
-        String fileName = path.getFileName().toString().toLowerCase();
+        String fileName = stripGzipSuffix(path.getFileName().toString().toLowerCase());
         return fileName.endsWith(".txt") || fileName.endsWith(".csv");
     }
-}
\ No newline at end of file
+
+    public static boolean isGzipFile(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(".gz");
+    }
+
+    /**
+     * True for .csv and .csv.gz files, which start with a header line.
+     */
+    public static boolean isCsvFile(Path path) {
+        return stripGzipSuffix(path.getFileName().toString().toLowerCase()).endsWith(".csv");
+    }
+
+    private static String stripGzipSuffix(String fileName) {
+        return fileName.endsWith(".gz") ? fileName.substring(0, fileName.length() - 3) : fileName;
+    }
+}